@@ -0,0 +1,22 @@
+package com.example.xyzreader;
+
+import android.app.Application;
+
+import com.example.xyzreader.remote.HttpClientHolder;
+import com.squareup.picasso.OkHttp3Downloader;
+import com.squareup.picasso.Picasso;
+
+public class XyzReaderApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Route image downloads through the same client as the feed so both share one
+        // connection pool and one HTTP cache. Must happen before the first Picasso.get().
+        Picasso picasso = new Picasso.Builder(this)
+                .downloader(new OkHttp3Downloader(HttpClientHolder.getClient(this)))
+                .build();
+        Picasso.setSingletonInstance(picasso);
+    }
+}
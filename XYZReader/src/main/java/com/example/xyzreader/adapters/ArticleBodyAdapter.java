@@ -0,0 +1,149 @@
+package com.example.xyzreader.adapters;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.text.Spanned;
+import android.text.method.LinkMovementMethod;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.xyzreader.R;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows an article on the detail screen: a header with title and byline, then one item per
+ * body paragraph. Only the paragraphs on screen get a text layout, so a long article costs no
+ * more to open or scroll than a short one, and the next few are measured in the background
+ * before they scroll in.
+ */
+public class ArticleBodyAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_PARAGRAPH = 1;
+
+    // Paragraphs below the one being bound that are laid out in the background
+    private static final int PRECOMPUTE_AHEAD = 4;
+
+    private CharSequence mTitle;
+    private CharSequence mByline;
+    private int mMetaBarColor;
+    private boolean mHasMetaBarColor;
+    private List<Spanned> mParagraphs = Collections.emptyList();
+    // Taken from the last paragraph view bound, all paragraphs share one style and width
+    private TextPrecomputer.Params mParagraphParams;
+    // Index of the last paragraph handed to TextPrecomputer.warm() with mParagraphParams
+    private int mWarmedUpTo = -1;
+
+    public void setHeader(CharSequence title, CharSequence byline) {
+        mTitle = title;
+        mByline = byline;
+        notifyItemChanged(0);
+    }
+
+    public void setMetaBarColor(int color) {
+        mMetaBarColor = color;
+        mHasMetaBarColor = true;
+        notifyItemChanged(0);
+    }
+
+    /**
+     * @param paragraphs the rendered body, or {@code null} while it is not available
+     */
+    public void setParagraphs(List<Spanned> paragraphs) {
+        if (paragraphs == null) {
+            paragraphs = Collections.emptyList();
+        }
+        if (paragraphs == mParagraphs) {
+            return;
+        }
+        mParagraphs = paragraphs;
+        mWarmedUpTo = -1;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getItemCount() {
+        return 1 + mParagraphs.size();
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return position == 0 ? VIEW_TYPE_HEADER : VIEW_TYPE_PARAGRAPH;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final LayoutInflater inflater = LayoutInflater.from(parent.getContext());
+        if (viewType == VIEW_TYPE_HEADER) {
+            return new HeaderViewHolder(inflater.inflate(
+                    R.layout.list_item_article_header, parent, false));
+        }
+        return new ParagraphViewHolder(inflater.inflate(
+                R.layout.list_item_article_paragraph, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        if (holder instanceof HeaderViewHolder) {
+            final HeaderViewHolder header = (HeaderViewHolder) holder;
+            header.titleView.setText(mTitle);
+            header.bylineView.setText(mByline);
+            if (mHasMetaBarColor) {
+                header.metaBar.setBackgroundColor(mMetaBarColor);
+            }
+        } else {
+            final TextView paragraphView = ((ParagraphViewHolder) holder).paragraphView;
+            paragraphView.setText(mParagraphs.get(position - 1));
+            final TextPrecomputer.Params params =
+                    TextPrecomputer.Params.of(paragraphView, mParagraphParams);
+            if (params != mParagraphParams) {
+                mParagraphParams = params;
+                mWarmedUpTo = -1;
+            }
+            precomputeAhead(position - 1);
+        }
+    }
+
+    /**
+     * Lays out the next few paragraphs in the background. Only the framework's word width
+     * cache keeps anything from it, the paragraphs themselves are bound as they are.
+     */
+    private void precomputeAhead(int index) {
+        if (mParagraphParams == null) {
+            return;
+        }
+        final int end = Math.min(index + PRECOMPUTE_AHEAD, mParagraphs.size() - 1);
+        for (int i = Math.max(index, mWarmedUpTo) + 1; i <= end; i++) {
+            TextPrecomputer.warm(mParagraphs.get(i), mParagraphParams);
+        }
+        mWarmedUpTo = Math.max(mWarmedUpTo, end);
+    }
+
+    private static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        final View metaBar;
+        final TextView titleView;
+        final TextView bylineView;
+
+        HeaderViewHolder(View itemView) {
+            super(itemView);
+            metaBar = itemView.findViewById(R.id.meta_bar);
+            titleView = itemView.findViewById(R.id.article_title);
+            bylineView = itemView.findViewById(R.id.article_byline);
+            bylineView.setMovementMethod(new LinkMovementMethod());
+        }
+    }
+
+    private static class ParagraphViewHolder extends RecyclerView.ViewHolder {
+        final TextView paragraphView;
+
+        ParagraphViewHolder(View itemView) {
+            super(itemView);
+            paragraphView = itemView.findViewById(R.id.article_paragraph);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.example.xyzreader.adapters;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
@@ -13,10 +12,10 @@ import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.app.AppCompatActivity;
-import android.support.v7.graphics.Palette;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.text.Html;
+import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -28,13 +27,14 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.Article;
 import com.example.xyzreader.data.ItemsContract;
+import com.example.xyzreader.data.PagedArticleList;
 import com.example.xyzreader.ui.ArticleListActivity;
+import com.example.xyzreader.ui.PaletteService;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
@@ -42,7 +42,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 // COMPLETED: Created a separate Adapter class so that the code be more readable
 // Help from this tutorial: http://innodroid.com/blog/post/a-complex-activity-transition-part-2
-public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.ArticlesViewHolder> {
+public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.ArticlesViewHolder>
+        implements PagedArticleList.Listener {
 
     private static final String TAG = ArticlesAdapter.class.getSimpleName();
 
@@ -50,13 +51,22 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
 
     private int mMutedColor = 0xFF333333;
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
     // Use default locale format
     private SimpleDateFormat outputFormat = new SimpleDateFormat();
     // Most time functions can only handle 1902 - 2037
-    private GregorianCalendar START_OF_EPOCH = new GregorianCalendar(2,1,1);
-
-    private Cursor mCursor;
+    private final long START_OF_EPOCH = new GregorianCalendar(2,1,1).getTimeInMillis();
+
+    // Positions below the one being bound whose texts are prepared in the background
+    private static final int PRECOMPUTE_AHEAD = 8;
+    // Roughly a few screens of cards
+    private static final int PRECOMPUTED_TEXTS = 64;
+
+    private final PagedArticleList mArticles;
+    private final TextPrecomputer<String> mTextPrecomputer =
+            new TextPrecomputer<String>(PRECOMPUTED_TEXTS);
+    // Captured from the first bound card, null until it has been laid out
+    private TextPrecomputer.Params mTitleParams;
+    private TextPrecomputer.Params mBylineParams;
     private Context mContext;
     private int mLastPosition = -1;
 
@@ -72,33 +82,36 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
 
     // COMPLETED: Added those too
     private final Picasso mRequestManager;
+    private final PaletteService mPaletteService;
+    private final ThumbnailPrefetcher mThumbnailPrefetcher;
     private final ViewHolderListener mViewHolderListener;
 
 
-    public ArticlesAdapter(Context context, Cursor cursor) {
+    public ArticlesAdapter(Context context) {
         mContext = context;
-        mCursor = cursor;
+        // Articles are loaded page by page as the grid scrolls, see onBindViewHolder
+        mArticles = new PagedArticleList(context, this);
 
         // COMPLETED: Added
         mRequestManager = Picasso.get();
-        mViewHolderListener = new ViewHolderListenerImplementation((AppCompatActivity) mContext);
-    }
-
-    @Override
-    public long getItemId(int position) {
-        mCursor.moveToPosition(position);
-        return mCursor.getLong(ArticleLoader.Query._ID);
-    }
+        mPaletteService = PaletteService.getInstance(context);
+        mThumbnailPrefetcher = new ThumbnailPrefetcher(mRequestManager,
+                new ThumbnailPrefetcher.Source() {
+                    @Override
+                    public String getThumbUrl(int position) {
+                        // Only looks at loaded pages, prefetching never pulls in new ones
+                        final Article article = mArticles.peek(position);
+                        return article != null ? article.getThumbUrl() : null;
+                    }
 
-    private Date parsePublishedDate() {
-        try {
-            String date = mCursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-            return dateFormat.parse(date);
-        } catch (ParseException ex) {
-            Log.e(TAG, ex.getMessage());
-            Log.i(TAG, "passing today's date");
-            return new Date();
-        }
+                    @Override
+                    public int getItemCount() {
+                        return mArticles.size();
+                    }
+                },
+                context.getResources().getInteger(R.integer.list_prefetch_min_items),
+                context.getResources().getInteger(R.integer.list_prefetch_max_items));
+        mViewHolderListener = new ViewHolderListenerImplementation((AppCompatActivity) mContext);
     }
 
     @NonNull
@@ -113,32 +126,42 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
     @Override
     public void onBindViewHolder(@NonNull final ArticlesViewHolder holder, final int position) {
 
-        mCursor.moveToPosition(position);
-        String title = mCursor.getString(ArticleLoader.Query.TITLE);
+        final Article article = mArticles.get(position);
+        if (article == null) {
+            // Its page is being loaded again, onItemRangeChanged rebinds it once it's there
+            holder.titleView.setText(null);
+            holder.subtitleView.setText(null);
+            mRequestManager.cancelRequest(holder.thumbnailView);
+            holder.thumbnailView.setImageResource(R.drawable.empty_detail);
+            holder.bindThumbUrl(null, 0);
+            return;
+        }
 
-        holder.titleView.setText(title);
+        String title = article.getTitle();
 
-        Date publishedDate = parsePublishedDate();
-        if (!publishedDate.before(START_OF_EPOCH.getTime())) {
+        // Prepared in the background by precomputeAhead() when this position came close
+        CharSequence[] texts = mTextPrecomputer.get(textKey(article));
+        if (texts == null) {
+            texts = buildTexts(article);
+            mTextPrecomputer.put(textKey(article), texts);
+        }
+        holder.titleView.setText(texts[0]);
+        // Stored as epoch millis at sync time, no parsing needed here
+        holder.subtitleView.setText(TextUtils.concat(
+                formatDate(article.getPublishedDate()), "\n", texts[1]));
 
-            holder.subtitleView.setText(Html.fromHtml(
-                    DateUtils.getRelativeTimeSpanString(
-                            publishedDate.getTime(),
-                            System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
-                            DateUtils.FORMAT_ABBREV_ALL).toString()
-                            + "<br/>" + " by "
-                            + mCursor.getString(ArticleLoader.Query.AUTHOR)));
+        mTitleParams = TextPrecomputer.Params.of(holder.titleView, mTitleParams);
+        mBylineParams = TextPrecomputer.Params.of(holder.subtitleView, mBylineParams);
+        precomputeAhead(position);
 
-        } else {
-            holder.subtitleView.setText(Html.fromHtml(
-                    outputFormat.format(publishedDate)
-                            + "<br/>" + " by "
-                            + mCursor.getString(ArticleLoader.Query.AUTHOR)));
-        }
+        final String thumbUrl = article.getThumbUrl();
+        final int syncedColor = article.getMutedColor();
+        holder.bindThumbUrl(thumbUrl, syncedColor);
+        mThumbnailPrefetcher.onThumbnailBound(thumbUrl);
 
         // COMPLETED: Add Picasso library for smoothly loading images from internet
-        Picasso.get()
-                .load(Uri.parse(mCursor.getString(ArticleLoader.Query.THUMB_URL)))
+        mRequestManager
+                .load(Uri.parse(article.getThumbUrl()))
                 .placeholder(R.drawable.empty_detail)
                 .error(R.drawable.empty_detail)
                 .into(holder.thumbnailView, new Callback() {
@@ -151,10 +174,10 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
                                 holder.thumbnailView.getDrawable()).getBitmap();
                        holder.thumbnailView.setImageBitmap(bitmap);
 
-                       Palette palette = Palette.from(bitmap).generate();
-                       int generatedColor = palette.getMutedColor(mMutedColor);
-
-                       holder.cardView.setCardBackgroundColor(generatedColor);
+                       // Known after the first time, otherwise generated in the background
+                       if (syncedColor == 0) {
+                           mPaletteService.generate(thumbUrl, bitmap, holder);
+                       }
 
                        // COMPLETED: Set the Item Animator here
                         setItemAnimator(holder.itemView, position);
@@ -170,7 +193,52 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
         ViewCompat.setTransitionName(holder.thumbnailView, title);
 
         Log.d(TAG, "Transition name: " + title);
-        Log.d(TAG, "Image url: " + mCursor.getString(ArticleLoader.Query.THUMB_URL));
+        Log.d(TAG, "Image url: " + article.getThumbUrl());
+    }
+
+    /**
+     * Prepares the texts of the loaded positions just below {@code position}, so they are
+     * ready by the time they scroll in.
+     */
+    private void precomputeAhead(int position) {
+        final int end = Math.min(position + PRECOMPUTE_AHEAD, mArticles.size() - 1);
+        for (int i = position + 1; i <= end; i++) {
+            final Article article = mArticles.peek(i);
+            if (article == null) {
+                continue;
+            }
+            mTextPrecomputer.precompute(textKey(article), new TextPrecomputer.Source() {
+                @Override
+                public CharSequence[] build() {
+                    return buildTexts(article);
+                }
+            }, mTitleParams, mBylineParams);
+        }
+    }
+
+    private static String textKey(Article article) {
+        return article.getId() + ":" + article.getContentHash();
+    }
+
+    /**
+     * @return the title and the author line of a card, may be called on any thread. The date
+     * goes in front of the author line at bind time, a relative date would go stale in the
+     * cache.
+     */
+    private static CharSequence[] buildTexts(Article article) {
+        return new CharSequence[] {
+                article.getTitle(),
+                Html.fromHtml("by " + article.getAuthor())
+        };
+    }
+
+    private CharSequence formatDate(long publishedDate) {
+        if (publishedDate >= START_OF_EPOCH) {
+            return DateUtils.getRelativeTimeSpanString(publishedDate,
+                    System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
+                    DateUtils.FORMAT_ABBREV_ALL);
+        }
+        return outputFormat.format(new Date(publishedDate));
     }
 
     /**
@@ -190,14 +258,17 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
 
     @Override
     public int getItemCount() {
-        return mCursor.getCount();
+        return mArticles.size();
     }
 
     // COMPLETED: Moved the Intent to this method
     private void showViewPagerActivity(int position, ImageView thumbnail) {
-        Uri itemIdUri = ItemsContract.Items.buildItemUri(getItemId(position));
-        String photoUrl = mCursor.getString(ArticleLoader.Query.PHOTO_URL);
-        Log.d(TAG, "Photo url: " + photoUrl);
+        Article article = mArticles.get(position);
+        if (article == null) {
+            return;
+        }
+        Uri itemIdUri = ItemsContract.Items.buildItemUri(article.getId());
+        Log.d(TAG, "Photo url: " + article.getPhotoUrl());
 
         Intent intent = new Intent(Intent.ACTION_VIEW, itemIdUri);
         intent.putExtra(TRANSITION_NAME, ViewCompat.getTransitionName(thumbnail));
@@ -276,12 +347,14 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
     }
 
     public class ArticlesViewHolder extends RecyclerView.ViewHolder implements
-            View.OnClickListener {
+            View.OnClickListener, PaletteService.Callback {
 
         private ImageView thumbnailView;
         private TextView titleView;
         private TextView subtitleView;
         private CardView cardView;
+        // Image the card color is taken from
+        private String thumbUrl;
 
         private ViewHolderListener viewHolderListener;
 
@@ -306,11 +379,80 @@ public class ArticlesAdapter extends RecyclerView.Adapter<ArticlesAdapter.Articl
         public void clearAnimation() {
             itemView.clearAnimation();
         }
+
+        /**
+         * Paints the card with the color taken after a sync, else the known color of the image
+         * at {@code url}, or the default color until it has been generated.
+         *
+         * @param syncedColor the article's muted color, 0 if the sync didn't store one
+         */
+        private void bindThumbUrl(String url, int syncedColor) {
+            if (thumbUrl != null && !thumbUrl.equals(url)) {
+                mPaletteService.cancel(thumbUrl, this);
+            }
+            if (syncedColor != 0) {
+                thumbUrl = null;
+                cardView.setCardBackgroundColor(syncedColor);
+                return;
+            }
+            thumbUrl = url;
+            final PaletteService.Colors colors = mPaletteService.peek(url);
+            cardView.setCardBackgroundColor(colors != null
+                    ? colors.getMutedColor(mMutedColor) : mMutedColor);
+        }
+
+        @Override
+        public void onColorsGenerated(String url, PaletteService.Colors colors) {
+            if (url.equals(thumbUrl)) {
+                cardView.setCardBackgroundColor(colors.getMutedColor(mMutedColor));
+            }
+        }
+    }
+
+    /**
+     * Scroll listener that prefetches the thumbnails of upcoming cards, add it to the grid.
+     */
+    public ThumbnailPrefetcher getThumbnailPrefetcher() {
+        return mThumbnailPrefetcher;
+    }
+
+    /**
+     * Reloads the articles around the current position, e.g. after a sync changed them. Cards
+     * that stayed the same are left alone, so the grid keeps its scroll position. Prepared
+     * texts are keyed by content and stay valid.
+     */
+    public void reload() {
+        mThumbnailPrefetcher.cancelAll();
+        mArticles.refresh();
+    }
+
+    /**
+     * Stops loading articles, call once the adapter is no longer used.
+     */
+    public void close() {
+        mThumbnailPrefetcher.cancelAll();
+        Log.d(TAG, "Thumbnail prefetch hits: " + mThumbnailPrefetcher.getHitCount()
+                + ", misses: " + mThumbnailPrefetcher.getMissCount());
+        mArticles.close();
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        notifyItemRangeInserted(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        notifyItemRangeChanged(positionStart, itemCount);
     }
 
-    // COMPLETED: Swap the cursor
-    public void swapCursor(Cursor cursor) {
-        mCursor = cursor;
-        notifyDataSetChanged();
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        notifyItemRangeRemoved(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition) {
+        notifyItemMoved(fromPosition, toPosition);
     }
 }
@@ -0,0 +1,157 @@
+package com.example.xyzreader.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+import android.widget.TextView;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Prepares the text of list items on a background thread before they are bound: builds the
+ * styled text and lays it out once with the paint and width of the TextView that will show it.
+ * A layout can't be handed to a TextView before PrecomputedText (API 28), but measuring it
+ * fills the framework's shared word width cache, so the TextView's own measure pass during
+ * a fling is mostly cache lookups. Binds take the prepared text with {@link #get}, text that
+ * is bound as it is only needs {@link #warm}.
+ *
+ * <p>Must be used from the main thread.
+ */
+final class TextPrecomputer<K> {
+    // Requests beyond this are dropped, binds further down the list ask again
+    private static final int MAX_PENDING = 16;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            // Stay out of the way of the UI and render threads
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "TextPrecomputer");
+                }
+            });
+
+    interface Source {
+        /** Called on a background thread, returns one text per {@link Params} passed along. */
+        CharSequence[] build();
+    }
+
+    /**
+     * What a text is laid out with, captured from a TextView that has been measured.
+     */
+    static final class Params {
+        final TextPaint paint;
+        final int width;
+        final float spacingMultiplier;
+        final float spacingExtra;
+        final boolean includePad;
+
+        private Params(TextView view, int width) {
+            // A copy, the view's own paint may change while the background thread uses it
+            paint = new TextPaint(view.getPaint());
+            this.width = width;
+            spacingMultiplier = view.getLineSpacingMultiplier();
+            spacingExtra = view.getLineSpacingExtra();
+            includePad = view.getIncludeFontPadding();
+        }
+
+        /**
+         * @return the params of {@code view}, {@code previous} if they haven't changed, or
+         * {@code null} if the view hasn't been laid out yet
+         */
+        static Params of(TextView view, Params previous) {
+            final int width = view.getWidth() - view.getTotalPaddingLeft()
+                    - view.getTotalPaddingRight();
+            if (width <= 0) {
+                return previous;
+            }
+            if (previous != null && previous.width == width
+                    && previous.paint.getTextSize() == view.getTextSize()
+                    && previous.paint.getTypeface() == view.getTypeface()) {
+                return previous;
+            }
+            return new Params(view, width);
+        }
+
+        void layout(CharSequence text) {
+            new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL,
+                    spacingMultiplier, spacingExtra, includePad);
+        }
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<K, CharSequence[]> mCache;
+    private final Set<K> mPending = new HashSet<K>();
+
+    TextPrecomputer(int maxEntries) {
+        mCache = new LruCache<K, CharSequence[]>(maxEntries);
+    }
+
+    /**
+     * @return the prepared texts, or {@code null} if they are not ready
+     */
+    CharSequence[] get(K key) {
+        return mCache.get(key);
+    }
+
+    void put(K key, CharSequence[] texts) {
+        mCache.put(key, texts);
+    }
+
+    /**
+     * Builds and lays out the texts for {@code key} in the background unless they are ready
+     * or already requested. A {@code null} entry in {@code params} skips laying out that text.
+     */
+    void precompute(final K key, final Source source, final Params... params) {
+        if (mPending.size() >= MAX_PENDING || mPending.contains(key)
+                || mCache.get(key) != null) {
+            return;
+        }
+        mPending.add(key);
+
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final CharSequence[] texts = source.build();
+                for (int i = 0; i < params.length && i < texts.length; i++) {
+                    if (params[i] != null && texts[i] != null) {
+                        params[i].layout(texts[i]);
+                    }
+                }
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mPending.remove(key);
+                        mCache.put(key, texts);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Lays {@code text} out in the background without keeping anything but what the framework
+     * caches, for text that needs no preparation of its own.
+     */
+    static void warm(final CharSequence text, final Params params) {
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                params.layout(text);
+            }
+        });
+    }
+}
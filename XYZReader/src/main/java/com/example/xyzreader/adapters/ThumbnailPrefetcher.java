@@ -0,0 +1,215 @@
+package com.example.xyzreader.adapters;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.util.LruCache;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Fetches the thumbnails of the cards about to scroll into a {@link StaggeredGridLayoutManager}
+ * grid into Picasso's memory cache, so they are there when the cards are bound. The faster the
+ * grid scrolls, the further ahead it fetches, between a minimum and a maximum number of cards.
+ * Fetches that fall out of range before they complete are cancelled.
+ *
+ * <p>Add it as the grid's scroll listener. Must be used from the main thread.
+ */
+public class ThumbnailPrefetcher extends RecyclerView.OnScrollListener {
+    // Scroll distance is projected this many frames ahead, about half a second
+    private static final int LOOKAHEAD_FRAMES = 30;
+    // Thumbnails remembered as fetched, for the hit count
+    private static final int FETCHED_URLS = 256;
+
+    interface Source {
+        /** @return the thumbnail URL at the position, or {@code null} if it isn't loaded */
+        String getThumbUrl(int position);
+
+        int getItemCount();
+    }
+
+    private static class Fetch {
+        final Object tag = new Object();
+        final int position;
+
+        Fetch(int position) {
+            this.position = position;
+        }
+    }
+
+    private final Picasso mPicasso;
+    private final Source mSource;
+    private final Map<String, Fetch> mInFlight = new HashMap<String, Fetch>();
+    private final LruCache<String, Boolean> mFetched = new LruCache<String, Boolean>(FETCHED_URLS);
+
+    private int mMinDistance;
+    private int mMaxDistance;
+    private int[] mSpanPositions;
+    // Direction of the last scroll, positive while scrolling down
+    private int mLastDy = 1;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    ThumbnailPrefetcher(Picasso picasso, Source source, int minDistance, int maxDistance) {
+        mPicasso = picasso;
+        mSource = source;
+        setDistance(minDistance, maxDistance);
+    }
+
+    /**
+     * Sets how many cards past the visible ones are fetched, {@code minDistance} at rest up to
+     * {@code maxDistance} when flinging.
+     */
+    public void setDistance(int minDistance, int maxDistance) {
+        mMinDistance = Math.max(0, minDistance);
+        mMaxDistance = Math.max(mMinDistance, maxDistance);
+    }
+
+    /** Number of bound thumbnails that had been prefetched. */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /** Number of bound thumbnails that had not been prefetched. */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Counts a hit or a miss for a thumbnail about to be loaded by a bound card.
+     */
+    void onThumbnailBound(String url) {
+        if (mFetched.get(url) != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        // Also called with 0, 0 after layout, which takes care of the first screen
+        if (dy != 0) {
+            mLastDy = dy;
+        }
+        update(recyclerView, Math.abs(dy));
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            update(recyclerView, 0);
+        }
+    }
+
+    /**
+     * Cancels every fetch in flight, e.g. when positions no longer refer to the same cards.
+     */
+    void cancelAll() {
+        for (Fetch fetch : mInFlight.values()) {
+            mPicasso.cancelTag(fetch.tag);
+        }
+        mInFlight.clear();
+    }
+
+    private void update(RecyclerView recyclerView, int scrolledPixels) {
+        if (!(recyclerView.getLayoutManager() instanceof StaggeredGridLayoutManager)) {
+            return;
+        }
+        final StaggeredGridLayoutManager layoutManager =
+                (StaggeredGridLayoutManager) recyclerView.getLayoutManager();
+        if (mSpanPositions == null || mSpanPositions.length != layoutManager.getSpanCount()) {
+            mSpanPositions = new int[layoutManager.getSpanCount()];
+        }
+        final int first = min(layoutManager.findFirstVisibleItemPositions(mSpanPositions));
+        final int last = max(layoutManager.findLastVisibleItemPositions(mSpanPositions));
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+
+        // Turn the projected scroll distance into cards, going by the cards on screen now
+        int distance = mMinDistance;
+        if (scrolledPixels > 0 && recyclerView.getHeight() > 0) {
+            final long projected = (long) scrolledPixels * LOOKAHEAD_FRAMES * (last - first + 1);
+            distance += (int) Math.min(mMaxDistance, projected / recyclerView.getHeight());
+        }
+        distance = Math.min(distance, mMaxDistance);
+
+        final int from;
+        final int to;
+        if (mLastDy > 0) {
+            from = last + 1;
+            to = Math.min(last + distance, mSource.getItemCount() - 1);
+        } else {
+            from = Math.max(first - distance, 0);
+            to = first - 1;
+        }
+
+        final Iterator<Fetch> inFlight = mInFlight.values().iterator();
+        while (inFlight.hasNext()) {
+            final Fetch fetch = inFlight.next();
+            if (fetch.position < from || fetch.position > to) {
+                mPicasso.cancelTag(fetch.tag);
+                inFlight.remove();
+            }
+        }
+
+        for (int position = from; position <= to; position++) {
+            final String url = mSource.getThumbUrl(position);
+            if (url != null && !mInFlight.containsKey(url) && mFetched.get(url) == null) {
+                fetch(url, position);
+            }
+        }
+    }
+
+    private void fetch(final String url, int position) {
+        final Fetch fetch = new Fetch(position);
+        mInFlight.put(url, fetch);
+        // Same request as the bind makes, so the cached bitmap is found under the same key
+        mPicasso.load(Uri.parse(url))
+                .priority(Picasso.Priority.LOW)
+                .tag(fetch.tag)
+                .fetch(new Callback() {
+                    @Override
+                    public void onSuccess() {
+                        if (mInFlight.get(url) == fetch) {
+                            mInFlight.remove(url);
+                        }
+                        mFetched.put(url, Boolean.TRUE);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        if (mInFlight.get(url) == fetch) {
+                            mInFlight.remove(url);
+                        }
+                    }
+                });
+    }
+
+    private static int min(int[] positions) {
+        int min = RecyclerView.NO_POSITION;
+        for (int position : positions) {
+            if (position != RecyclerView.NO_POSITION
+                    && (min == RecyclerView.NO_POSITION || position < min)) {
+                min = position;
+            }
+        }
+        return min;
+    }
+
+    private static int max(int[] positions) {
+        int max = RecyclerView.NO_POSITION;
+        for (int position : positions) {
+            max = Math.max(max, position);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+
+/**
+ * Immutable snapshot of one row of {@link ArticleLoader.Query}, so that article metadata can
+ * be held on to after the cursor it was read from is gone.
+ */
+public final class Article {
+    private final long mId;
+    private final String mTitle;
+    private final long mPublishedDate;
+    private final String mAuthor;
+    private final String mThumbUrl;
+    private final String mPhotoUrl;
+    private final float mAspectRatio;
+    private final String mContentHash;
+    private final int mMutedColor;
+    private final int mDarkMutedColor;
+
+    private Article(Cursor cursor) {
+        mId = cursor.getLong(ArticleLoader.Query._ID);
+        mTitle = cursor.getString(ArticleLoader.Query.TITLE);
+        mPublishedDate = cursor.getLong(ArticleLoader.Query.PUBLISHED_DATE);
+        mAuthor = cursor.getString(ArticleLoader.Query.AUTHOR);
+        mThumbUrl = cursor.getString(ArticleLoader.Query.THUMB_URL);
+        mPhotoUrl = cursor.getString(ArticleLoader.Query.PHOTO_URL);
+        mAspectRatio = cursor.getFloat(ArticleLoader.Query.ASPECT_RATIO);
+        mContentHash = cursor.getString(ArticleLoader.Query.CONTENT_HASH);
+        // NULL reads as 0, which no swatch color can be since they are opaque
+        mMutedColor = cursor.getInt(ArticleLoader.Query.MUTED_COLOR);
+        mDarkMutedColor = cursor.getInt(ArticleLoader.Query.DARK_MUTED_COLOR);
+    }
+
+    /**
+     * Reads the row the cursor is positioned on. The cursor must use
+     * {@link ArticleLoader.Query#PROJECTION}.
+     */
+    public static Article fromCursor(Cursor cursor) {
+        return new Article(cursor);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /** Epoch millis. */
+    public long getPublishedDate() {
+        return mPublishedDate;
+    }
+
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    public String getThumbUrl() {
+        return mThumbUrl;
+    }
+
+    public String getPhotoUrl() {
+        return mPhotoUrl;
+    }
+
+    public float getAspectRatio() {
+        return mAspectRatio;
+    }
+
+    /** Changes whenever the article's synced content does, may be {@code null}. */
+    public String getContentHash() {
+        return mContentHash;
+    }
+
+    /** Muted color of the thumbnail taken after a sync, 0 if unknown or there is none. */
+    public int getMutedColor() {
+        return mMutedColor;
+    }
+
+    /** Dark muted color of the thumbnail taken after a sync, 0 if unknown or there is none. */
+    public int getDarkMutedColor() {
+        return mDarkMutedColor;
+    }
+}
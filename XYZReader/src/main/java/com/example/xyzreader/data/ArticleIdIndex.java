@@ -0,0 +1,89 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+
+/**
+ * Positions of article ids in one load of the article list. Ids are kept in a {@code long[]}
+ * in list order and looked up through an open-addressing table of positions, so going from an
+ * id to its page is a constant-time probe instead of a walk over the cursor. Immutable.
+ */
+public final class ArticleIdIndex {
+    public static final ArticleIdIndex EMPTY = new ArticleIdIndex(new long[0], 0);
+
+    private final long[] mIds;
+    private final int mSize;
+    // position + 1 of the id hashed to each slot, 0 marks an empty slot
+    private final int[] mSlots;
+    private final int mMask;
+
+    private ArticleIdIndex(long[] ids, int size) {
+        mIds = ids;
+        mSize = size;
+
+        // Keep the table at most half full so probe sequences stay short
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        mSlots = new int[capacity];
+        mMask = capacity - 1;
+        for (int position = 0; position < size; position++) {
+            int slot = slotOf(ids[position]);
+            while (mSlots[slot] != 0) {
+                if (ids[mSlots[slot] - 1] == ids[position]) {
+                    break;
+                }
+                slot = (slot + 1) & mMask;
+            }
+            if (mSlots[slot] == 0) {
+                mSlots[slot] = position + 1;
+            }
+        }
+    }
+
+    /**
+     * Reads every id in {@code idColumn}, in cursor order. Leaves the cursor positioned after
+     * the last row.
+     */
+    public static ArticleIdIndex fromCursor(Cursor cursor, int idColumn) {
+        final long[] ids = new long[cursor.getCount()];
+        int size = 0;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext() && size < ids.length) {
+            ids[size++] = cursor.getLong(idColumn);
+        }
+        return new ArticleIdIndex(ids, size);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getId(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + mSize);
+        }
+        return mIds[position];
+    }
+
+    /**
+     * @return the position of the first row with {@code id}, or -1 if there is none
+     */
+    public int indexOf(long id) {
+        int slot = slotOf(id);
+        int entry;
+        while ((entry = mSlots[slot]) != 0) {
+            if (mIds[entry - 1] == id) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return -1;
+    }
+
+    private int slotOf(long id) {
+        // Row ids are mostly sequential, mix the bits so they spread over the table
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mMask;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.xyzreader.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Loads an {@link ArticleIdIndex} of all articles in {@link ItemsContract.Items#DEFAULT_SORT}
+ * order. Only the ids are queried and the index is built off the main thread, then the cursor
+ * is closed. Reloads when the articles change.
+ */
+public class ArticleIdIndexLoader extends AsyncTaskLoader<ArticleIdIndex> {
+    private static final String[] PROJECTION = {
+            ItemsContract.Items._ID,
+    };
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private ArticleIdIndex mIndex;
+    private boolean mObserving;
+
+    public ArticleIdIndexLoader(Context context) {
+        super(context);
+    }
+
+    @Override
+    public ArticleIdIndex loadInBackground() {
+        final Cursor cursor = getContext().getContentResolver().query(
+                ItemsContract.Items.buildDirUri(), PROJECTION, null, null,
+                ItemsContract.Items.DEFAULT_SORT);
+        if (cursor == null) {
+            return ArticleIdIndex.EMPTY;
+        }
+        try {
+            return ArticleIdIndex.fromCursor(cursor, 0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(ArticleIdIndex index) {
+        mIndex = index;
+        if (isStarted()) {
+            super.deliverResult(index);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(
+                    ItemsContract.Items.buildDirUri(), true, mObserver);
+            mObserving = true;
+        }
+        if (mIndex != null) {
+            deliverResult(mIndex);
+        }
+        if (takeContentChanged() || mIndex == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mIndex = null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.xyzreader.data;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+
+/**
+ * Loads a single {@link Article} through the {@link ArticleRepository}. A cached article is
+ * delivered right away without going to the provider. Reloads when the articles change.
+ */
+public class ArticleItemLoader extends AsyncTaskLoader<Article>
+        implements ArticleRepository.Listener {
+    private final ArticleRepository mRepository;
+    private final long mItemId;
+    private Article mArticle;
+    private boolean mListening;
+
+    public ArticleItemLoader(Context context, long itemId) {
+        super(context);
+        mRepository = ArticleRepository.getInstance(context);
+        mItemId = itemId;
+    }
+
+    @Override
+    public Article loadInBackground() {
+        return mRepository.get(mItemId);
+    }
+
+    @Override
+    public void deliverResult(Article article) {
+        mArticle = article;
+        if (isStarted()) {
+            super.deliverResult(article);
+        }
+    }
+
+    @Override
+    public void onArticlesChanged() {
+        onContentChanged();
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mListening) {
+            mRepository.addListener(this);
+            mListening = true;
+        }
+        if (mArticle == null) {
+            mArticle = mRepository.peek(mItemId);
+        }
+        if (mArticle != null) {
+            deliverResult(mArticle);
+        }
+        if (takeContentChanged() || mArticle == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mListening) {
+            mRepository.removeListener(this);
+            mListening = false;
+        }
+        mArticle = null;
+    }
+}
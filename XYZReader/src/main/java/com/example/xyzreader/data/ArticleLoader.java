@@ -7,21 +7,25 @@ import android.net.Uri;
 import android.support.v4.content.Loader;
 
 /**
- * Helper for loading a list of articles or a single article.
+ * Helper for loading search results, plus the projections articles are read with. Article
+ * metadata is read through {@link ArticleRepository}.
  */
 public class ArticleLoader extends CursorLoader {
-    public static Loader<Cursor> newAllArticlesInstance(Context context) {
-        return new ArticleLoader(context, ItemsContract.Items.buildDirUri());
+    /**
+     * Loads the articles matching free-text search terms, best matches first.
+     */
+    public static Loader<Cursor> newSearchInstance(Context context, String terms) {
+        return new ArticleLoader(context, ItemsContract.Items.buildSearchUri(terms),
+                SearchQuery.PROJECTION, null);
     }
 
-    public static Loader<Cursor> newInstanceForItemId(Context context, long itemId) {
-        return new ArticleLoader(context, ItemsContract.Items.buildItemUri(itemId));
-    }
-
-    private ArticleLoader(Context context, Uri uri) {
-        super(context, uri, Query.PROJECTION, null, null, ItemsContract.Items.DEFAULT_SORT);
+    private ArticleLoader(Context context, Uri uri, String[] projection, String sortOrder) {
+        super(context, uri, projection, null, null, sortOrder);
     }
 
+    /**
+     * Article metadata, enough to show a list entry or a detail header.
+     */
     public interface Query {
         String[] PROJECTION = {
                 ItemsContract.Items._ID,
@@ -31,7 +35,9 @@ public class ArticleLoader extends CursorLoader {
                 ItemsContract.Items.THUMB_URL,
                 ItemsContract.Items.PHOTO_URL,
                 ItemsContract.Items.ASPECT_RATIO,
-                ItemsContract.Items.BODY,
+                ItemsContract.Items.CONTENT_HASH,
+                ItemsContract.Items.MUTED_COLOR,
+                ItemsContract.Items.DARK_MUTED_COLOR,
         };
 
         int _ID = 0;
@@ -41,6 +47,38 @@ public class ArticleLoader extends CursorLoader {
         int THUMB_URL = 4;
         int PHOTO_URL = 5;
         int ASPECT_RATIO = 6;
-        int BODY = 7;
+        int CONTENT_HASH = 7;
+        int MUTED_COLOR = 8;
+        int DARK_MUTED_COLOR = 9;
+    }
+
+    /**
+     * {@link Query} plus a snippet of the matched text. Indices shared with {@link Query} are
+     * the same, so search results can be bound like any other article row.
+     */
+    public interface SearchQuery extends Query {
+        String[] PROJECTION = {
+                ItemsContract.Items._ID,
+                ItemsContract.Items.TITLE,
+                ItemsContract.Items.PUBLISHED_DATE,
+                ItemsContract.Items.AUTHOR,
+                ItemsContract.Items.THUMB_URL,
+                ItemsContract.Items.PHOTO_URL,
+                ItemsContract.Items.ASPECT_RATIO,
+                ItemsContract.Items.CONTENT_HASH,
+                ItemsContract.Items.MUTED_COLOR,
+                ItemsContract.Items.DARK_MUTED_COLOR,
+                ItemsContract.Items.SNIPPET,
+        };
+
+        int SNIPPET = 10;
+    }
+
+    public interface BodyQuery {
+        String[] PROJECTION = {
+                ItemsContract.Items.BODY,
+        };
+
+        int BODY = 0;
     }
 }
@@ -0,0 +1,139 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide cache of {@link Article}s keyed by {@link ItemsContract.Items#_ID}. The list fills
+ * it as pages load, so opening or swiping to an article usually costs no provider query.
+ * Entries are dropped when the provider reports a change, after which listeners are told to
+ * read again. Thread safe; {@link #get(long)} may query and must not run on the main thread.
+ */
+public final class ArticleRepository {
+    private static final int CACHE_SIZE = 256;
+
+    private static ArticleRepository sInstance;
+
+    public interface Listener {
+        /** Called on the main thread after cached articles were invalidated. */
+        void onArticlesChanged();
+    }
+
+    private final ContentResolver mResolver;
+    private final LruCache<Long, Article> mCache = new LruCache<Long, Article>(CACHE_SIZE);
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    // Bumped on every invalidation so results of reads that raced with it are not cached
+    private final AtomicInteger mVersion = new AtomicInteger();
+
+    private ArticleRepository(Context context) {
+        mResolver = context.getContentResolver();
+        mResolver.registerContentObserver(ItemsContract.Items.buildDirUri(), true,
+                new ContentObserver(new Handler(Looper.getMainLooper())) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        onChange(selfChange, null);
+                    }
+
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        invalidate(uri);
+                    }
+                });
+    }
+
+    public static synchronized ArticleRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the cached article, or {@code null} if it has to be loaded with {@link #get(long)}
+     */
+    public Article peek(long id) {
+        return mCache.get(id);
+    }
+
+    /**
+     * Returns the article from the cache, querying the provider on a miss.
+     *
+     * @return the article, or {@code null} if there is none with this id
+     */
+    public Article get(long id) {
+        Article article = mCache.get(id);
+        if (article != null) {
+            return article;
+        }
+
+        final int version = mVersion.get();
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildItemUri(id),
+                ArticleLoader.Query.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            article = Article.fromCursor(cursor);
+        } finally {
+            cursor.close();
+        }
+        if (mVersion.get() == version) {
+            mCache.put(id, article);
+        }
+        return article;
+    }
+
+    /**
+     * Version to pass to {@link #putAll(List, int)}, taken before the articles are queried.
+     */
+    int getVersion() {
+        return mVersion.get();
+    }
+
+    /**
+     * Caches articles read elsewhere, unless the data changed since {@code version} was taken.
+     */
+    void putAll(List<Article> articles, int version) {
+        for (Article article : articles) {
+            if (mVersion.get() != version) {
+                return;
+            }
+            mCache.put(article.getId(), article);
+        }
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void invalidate(Uri uri) {
+        mVersion.incrementAndGet();
+        final List<String> segments = uri != null ? uri.getPathSegments() : null;
+        if (segments != null && segments.size() >= 2 && TextUtils.isDigitsOnly(segments.get(1))) {
+            mCache.remove(Long.parseLong(segments.get(1)));
+        } else {
+            mCache.evictAll();
+        }
+        for (Listener listener : mListeners) {
+            listener.onArticlesChanged();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.example.xyzreader.remote.ArticleStream;
+import com.example.xyzreader.remote.Config;
+import com.example.xyzreader.remote.HttpClientHolder;
+import com.example.xyzreader.remote.RemoteArticle;
+import com.example.xyzreader.remote.RemoteEndpointUtil;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Fetches the feed and brings the stored articles in line with it. Shared by
+ * {@link UpdaterService} for user-initiated refreshes and {@link SyncJobService} for scheduled
+ * ones. Blocks, so it has to run off the main thread.
+ */
+class ArticleSyncer {
+    private static final String TAG = "ArticleSyncer";
+
+    // Number of rows handed to the provider at a time while the feed is streaming in
+    private static final int BATCH_SIZE = 100;
+    // Rows the provider commits per transaction, readers get a turn in between
+    private static final int CHUNK_SIZE = 25;
+    // Repeated refreshes closer together than this are answered by the previous sync
+    static final long MIN_SYNC_INTERVAL_MILLIS = 30 * 1000;
+
+    // Only one sync runs per process, whether it was started by UpdaterService or the job
+    private static final Object sLock = new Object();
+    private static boolean sRunning;
+    private static int sSyncCount;
+    private static int sLastOutcome = -1;
+
+    private final Context mContext;
+    private final OkHttpClient mClient;
+    private final URL mFeedUrl;
+
+    ArticleSyncer(Context context) {
+        this(context, HttpClientHolder.getClient(context), Config.BASE_URL);
+    }
+
+    ArticleSyncer(Context context, OkHttpClient client, URL feedUrl) {
+        mContext = context.getApplicationContext();
+        mClient = client;
+        mFeedUrl = feedUrl;
+    }
+
+    /**
+     * Runs a sync, or waits for the one already in progress and reports its result. Requests
+     * that arrive within {@link #MIN_SYNC_INTERVAL_MILLIS} of the last finished sync are
+     * answered from that sync instead of fetching again.
+     *
+     * @return {@code true} if the stored articles are up to date with the feed, either because
+     * they were synced or because the feed had not changed
+     */
+    boolean sync() {
+        synchronized (sLock) {
+            if (sRunning) {
+                // Attach to the sync that is already running rather than queueing another one
+                int syncCount = sSyncCount;
+                while (sRunning && sSyncCount == syncCount) {
+                    try {
+                        sLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                Log.d(TAG, "Coalesced with a running sync.");
+                return isSuccess(sLastOutcome);
+            }
+
+            long sinceLastEnd = System.currentTimeMillis() - SyncStatus.getLastEndTime(mContext);
+            if (sinceLastEnd >= 0 && sinceLastEnd < MIN_SYNC_INTERVAL_MILLIS
+                    && isSuccess(SyncStatus.getLastOutcome(mContext))) {
+                // Nothing is recorded, so the window stays anchored to the sync that ran and
+                // its end time and outcome are kept
+                Log.d(TAG, "Last sync finished " + sinceLastEnd + "ms ago, not syncing.");
+                return true;
+            }
+            sRunning = true;
+        }
+
+        int outcome = SyncStatus.OUTCOME_FAILED;
+        try {
+            SyncStatus.recordStart(mContext, System.currentTimeMillis());
+            outcome = syncFeed();
+        } finally {
+            SyncStatus.recordEnd(mContext, System.currentTimeMillis(), outcome);
+            synchronized (sLock) {
+                sRunning = false;
+                sSyncCount++;
+                sLastOutcome = outcome;
+                sLock.notifyAll();
+            }
+        }
+        if (Config.SYNC_THUMBNAIL_COLORS && isSuccess(outcome)) {
+            // Downloads every new thumbnail, so it runs on its own once the sync is over
+            SyncScheduler.scheduleThumbnailColors(mContext);
+        }
+        return isSuccess(outcome);
+    }
+
+    private int syncFeed() {
+        try (ArticleStream stream = RemoteEndpointUtil.openArticleStream(mContext, mClient,
+                mFeedUrl)) {
+            if (stream == null) {
+                // Nothing changed since the last sync, leave the database alone
+                Log.d(TAG, "Feed not modified, skipping sync.");
+                return SyncStatus.OUTCOME_NOT_MODIFIED;
+            }
+            syncArticles(stream);
+            RemoteEndpointUtil.saveValidators(mContext, stream);
+            return SyncStatus.OUTCOME_SUCCESS;
+        } catch (IOException | RemoteException e) {
+            Log.e(TAG, "Error updating content.", e);
+            // Make sure the next attempt fetches the full feed again
+            RemoteEndpointUtil.clearValidators(mContext);
+            return SyncStatus.OUTCOME_FAILED;
+        }
+    }
+
+    private static boolean isSuccess(int outcome) {
+        return outcome != SyncStatus.OUTCOME_FAILED && outcome != -1;
+    }
+
+    /**
+     * Applies the difference between the streamed feed and the stored articles.
+     *
+     * <p>Everything is written as one sync generation. Updates to articles readers already see
+     * are staged, new articles stay hidden and stale ones stay around until the whole feed has
+     * been read and the generation is published, which readers see as a single change. If there is nothing to
+     * show yet, the generation is published after every batch so a first sync fills the list
+     * progressively.
+     */
+    private void syncArticles(ArticleStream stream)
+            throws IOException, RemoteException {
+        ArrayList<ContentValues> upserts = new ArrayList<ContentValues>();
+        long notificationsBefore = ItemsProvider.getNotificationCount();
+
+        // Diff the feed against what we already have instead of rewriting the whole table,
+        // so unchanged rows keep their _ID and open cursors are not invalidated for nothing.
+        Map<String, LocalItem> localItems = queryLocalItems();
+        Set<String> seenServerIds = new HashSet<String>();
+        ArrayList<RemoteArticle> articles = new ArrayList<RemoteArticle>(BATCH_SIZE);
+        int changeCount = 0;
+        long generation = beginSyncGeneration();
+        boolean publishEachBatch = localItems.isEmpty();
+
+        // Articles are read one at a time off the wire and written out in small batches,
+        // so memory use does not grow with the size of the feed.
+        RemoteArticle article;
+        while ((article = stream.next()) != null) {
+            if (!article.isComplete()) {
+                Log.w(TAG, "Skipping incomplete article " + article.getId());
+                continue;
+            }
+            String serverId = article.getId();
+            if (!seenServerIds.add(serverId)) {
+                Log.w(TAG, "Skipping duplicate article " + serverId);
+                continue;
+            }
+
+            articles.add(article);
+            if (articles.size() >= BATCH_SIZE) {
+                collectUpserts(articles, localItems, upserts);
+                changeCount += applyUpserts(upserts, generation);
+                if (publishEachBatch) {
+                    publishSyncGeneration(generation, null);
+                }
+            }
+        }
+        collectUpserts(articles, localItems, upserts);
+        changeCount += applyUpserts(upserts, generation);
+
+        // Whatever is left locally is no longer in the feed. This only runs once the whole
+        // feed has been read, so a truncated download never prunes valid articles.
+        long[] staleIds = new long[localItems.size()];
+        int i = 0;
+        for (LocalItem staleItem : localItems.values()) {
+            staleIds[i++] = staleItem.id;
+        }
+        publishSyncGeneration(generation, staleIds);
+        changeCount += staleIds.length;
+
+        Log.d(TAG, "Sync generation " + generation + " applied " + changeCount
+                + " row changes for " + seenServerIds.size() + " articles, sending "
+                + (ItemsProvider.getNotificationCount() - notificationsBefore)
+                + " change notifications");
+    }
+
+    /**
+     * Converts and clears the batch of articles, adding the new and changed ones to
+     * {@code upserts} and taking every article in the batch out of {@code localItems}.
+     */
+    private static void collectUpserts(ArrayList<RemoteArticle> articles,
+            Map<String, LocalItem> localItems, ArrayList<ContentValues> upserts)
+            throws IOException {
+        List<ContentValues> converted;
+        try {
+            converted = ArticleConverter.convert(articles);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Sync interrupted");
+        }
+        articles.clear();
+
+        for (ContentValues values : converted) {
+            String contentHash = values.getAsString(ItemsContract.Items.CONTENT_HASH);
+            LocalItem localItem = localItems.remove(
+                    values.getAsString(ItemsContract.Items.SERVER_ID));
+            if (localItem == null || !contentHash.equals(localItem.contentHash)) {
+                // New and changed rows both go through the provider's upsert on SERVER_ID
+                upserts.add(values);
+            }
+        }
+    }
+
+    /**
+     * Writes and clears the pending rows, returning how many were written.
+     */
+    private int applyUpserts(ArrayList<ContentValues> upserts, long generation) {
+        int count = upserts.size();
+        if (count > 0) {
+            mContext.getContentResolver().bulkInsert(
+                    ItemsContract.Items.buildSyncUri(generation, CHUNK_SIZE),
+                    upserts.toArray(new ContentValues[count]));
+            upserts.clear();
+        }
+        return count;
+    }
+
+    private long beginSyncGeneration() throws RemoteException {
+        Bundle result = mContext.getContentResolver().call(ItemsContract.Items.buildDirUri(),
+                ItemsContract.Items.METHOD_BEGIN_SYNC_GENERATION, null, null);
+        if (result == null) {
+            throw new RemoteException("Provider did not return a sync generation");
+        }
+        return result.getLong(ItemsContract.Items.EXTRA_SYNC_GENERATION);
+    }
+
+    private void publishSyncGeneration(long generation, long[] staleIds) {
+        Bundle extras = new Bundle();
+        extras.putLong(ItemsContract.Items.EXTRA_SYNC_GENERATION, generation);
+        extras.putLongArray(ItemsContract.Items.EXTRA_STALE_IDS, staleIds);
+        mContext.getContentResolver().call(ItemsContract.Items.buildDirUri(),
+                ItemsContract.Items.METHOD_PUBLISH_SYNC_GENERATION, null, extras);
+    }
+
+    /**
+     * Loads the server id, local id and content hash of every stored article, keyed by server id.
+     */
+    private Map<String, LocalItem> queryLocalItems() {
+        Map<String, LocalItem> localItems = new HashMap<String, LocalItem>();
+        Cursor cursor = mContext.getContentResolver().query(
+                ItemsContract.Items.buildIncludePendingUri(),
+                LocalItem.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return localItems;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                LocalItem localItem = new LocalItem(cursor.getLong(LocalItem.ID),
+                        cursor.getString(LocalItem.CONTENT_HASH));
+                localItems.put(cursor.getString(LocalItem.SERVER_ID), localItem);
+            }
+        } finally {
+            cursor.close();
+        }
+        return localItems;
+    }
+
+    private static class LocalItem {
+        static final String[] PROJECTION = {
+                ItemsContract.Items._ID,
+                ItemsContract.Items.SERVER_ID,
+                ItemsContract.Items.CONTENT_HASH,
+        };
+
+        static final int ID = 0;
+        static final int SERVER_ID = 1;
+        static final int CONTENT_HASH = 2;
+
+        final long id;
+        final String contentHash;
+
+        LocalItem(long id, String contentHash) {
+            this.id = id;
+            this.contentHash = contentHash;
+        }
+    }
+}
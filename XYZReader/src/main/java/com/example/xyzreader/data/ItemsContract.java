@@ -15,7 +15,10 @@ public class ItemsContract {
 		String TITLE = "title";
 		/** Type: TEXT NOT NULL */
 		String AUTHOR = "author";
-		/** Type: TEXT NOT NULL */
+		/**
+		 * Type: TEXT NOT NULL. Accepted on writes to the items URIs but stored separately, read
+		 * it through {@link Items#buildBodyUri(long)}.
+		 */
 		String BODY = "body";
         /** Type: TEXT NOT NULL */
         String THUMB_URL = "thumb_url";
@@ -23,26 +26,138 @@ public class ItemsContract {
 		String PHOTO_URL = "photo_url";
 		/** Type: REAL NOT NULL DEFAULT 1.5 */
 		String ASPECT_RATIO = "aspect_ratio";
-		/** Type: INTEGER NOT NULL DEFAULT 0 */
+		/** Type: INTEGER NOT NULL DEFAULT 0, epoch millis */
 		String PUBLISHED_DATE = "published_date";
+		/** Type: TEXT, hex digest of the synced fields, used to skip unchanged rows */
+		String CONTENT_HASH = "content_hash";
+		/**
+		 * Type: INTEGER NOT NULL DEFAULT 0. Sync generation that inserted the row, which stays
+		 * hidden from queries until that generation is published.
+		 */
+		String SYNC_GENERATION = "sync_generation";
+		/**
+		 * Type: INTEGER, muted color of the thumbnail as taken after a sync. NULL if it hasn't
+		 * been computed yet, 0 if the thumbnail has no such color or couldn't be loaded.
+		 */
+		String MUTED_COLOR = "muted_color";
+		/** Type: INTEGER, dark muted color of the thumbnail, see {@link #MUTED_COLOR} */
+		String DARK_MUTED_COLOR = "dark_muted_color";
+	}
+
+	interface SearchColumns {
+		/** Type: TEXT, excerpt around the matched terms with matches wrapped in &lt;b&gt; */
+		String SNIPPET = "snippet";
+	}
+
+	interface BodyColumns {
+		/** Type: INTEGER PRIMARY KEY, the {@link ItemsColumns#_ID} of the article */
+		String ITEM_ID = "item_id";
+		/** Type: TEXT NOT NULL */
+		String BODY = "body";
 	}
 
-	public static class Items implements ItemsColumns {
+	public static class Items implements ItemsColumns, SearchColumns {
 		public static final String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.com.example.xyzreader.items";
 		public static final String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.com.example.xyzreader.items";
+		public static final String CONTENT_BODY_TYPE = "vnd.android.cursor.item/vnd.com.example.xyzreader.items.body";
+
+        /**
+         * Newest first, ties broken by _ID so the order is total. Both keys follow
+         * the published_date index, which stores rowids in ascending order.
+         */
+        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC, " + _ID + " ASC";
 
-        public static final String DEFAULT_SORT = PUBLISHED_DATE + " DESC";
+		/** Query parameter of the search URI holding the user's search terms. */
+		public static final String QUERY_PARAMETER_SEARCH = "q";
+		/** Optional query parameter limiting the number of rows returned. */
+		public static final String QUERY_PARAMETER_LIMIT = "limit";
+		/** Keyset paging: {@link #PUBLISHED_DATE} of the last row of the previous page. */
+		public static final String QUERY_PARAMETER_AFTER_DATE = "after_date";
+		/** Keyset paging: {@link #_ID} of the last row of the previous page. */
+		public static final String QUERY_PARAMETER_AFTER_ID = "after_id";
+		/** Set to 1 to include rows of sync generations that are not published yet. */
+		public static final String QUERY_PARAMETER_INCLUDE_PENDING = "include_pending";
+		/** Bulk inserts: generation that newly inserted rows belong to. */
+		public static final String QUERY_PARAMETER_SYNC_GENERATION = "sync_generation";
+		/** Bulk inserts: number of rows committed per transaction, all of them by default. */
+		public static final String QUERY_PARAMETER_CHUNK_SIZE = "chunk_size";
+
+		/**
+		 * Provider method returning the next sync generation in
+		 * {@link #EXTRA_SYNC_GENERATION}. Calling it again before publishing returns the same
+		 * generation, so rows left over from an interrupted sync are picked up by the next one.
+		 * Updates staged by an interrupted sync are dropped.
+		 */
+		public static final String METHOD_BEGIN_SYNC_GENERATION = "begin_sync_generation";
+		/**
+		 * Provider method that makes the generation in {@link #EXTRA_SYNC_GENERATION} visible
+		 * and, in the same transaction, applies its staged updates and deletes the rows in
+		 * {@link #EXTRA_STALE_IDS}. Observers are notified once, here rather than per insert.
+		 */
+		public static final String METHOD_PUBLISH_SYNC_GENERATION = "publish_sync_generation";
+		public static final String EXTRA_SYNC_GENERATION = "sync_generation";
+		public static final String EXTRA_STALE_IDS = "stale_ids";
 
 		/** Matches: /items/ */
 		public static Uri buildDirUri() {
 			return BASE_URI.buildUpon().appendPath("items").build();
 		}
 
+		/**
+		 * Matches: /items/?sync_generation=[generation]&amp;chunk_size=[size]. For bulk inserts
+		 * that belong to a sync: new rows stay hidden and updates to visible rows are staged
+		 * until the generation is published, and every {@code chunkSize} rows are committed on
+		 * their own.
+		 */
+		public static Uri buildSyncUri(long generation, int chunkSize) {
+			return buildDirUri().buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_SYNC_GENERATION, Long.toString(generation))
+					.appendQueryParameter(QUERY_PARAMETER_CHUNK_SIZE, Integer.toString(chunkSize))
+					.build();
+		}
+
+		/** Matches: /items/?include_pending=1 */
+		public static Uri buildIncludePendingUri() {
+			return buildDirUri().buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_INCLUDE_PENDING, "1").build();
+		}
+
 		/** Matches: /items/[_id]/ */
 		public static Uri buildItemUri(long _id) {
 			return BASE_URI.buildUpon().appendPath("items").appendPath(Long.toString(_id)).build();
 		}
 
+		/**
+		 * Matches: /items/?after_date=[date]&amp;after_id=[_id]&amp;limit=[limit]. Returns up to
+		 * {@code limit} rows in {@link #DEFAULT_SORT} order that come after the given row,
+		 * seeking through the index instead of skipping rows like an OFFSET would.
+		 *
+		 * @param afterId the last row of the previous page, or -1 for the first page
+		 */
+		public static Uri buildPageUri(long afterDate, long afterId, int limit) {
+			final Uri.Builder builder = buildDirUri().buildUpon()
+					.appendQueryParameter(QUERY_PARAMETER_LIMIT, Integer.toString(limit));
+			if (afterId >= 0) {
+				builder.appendQueryParameter(QUERY_PARAMETER_AFTER_DATE, Long.toString(afterDate))
+						.appendQueryParameter(QUERY_PARAMETER_AFTER_ID, Long.toString(afterId));
+			}
+			return builder.build();
+		}
+
+		/**
+		 * Matches: /items/search?q=[terms]. Rows carry the article columns plus
+		 * {@link SearchColumns#SNIPPET}, best matches first.
+		 */
+		public static Uri buildSearchUri(String terms) {
+			return BASE_URI.buildUpon().appendPath("items").appendPath("search")
+					.appendQueryParameter(QUERY_PARAMETER_SEARCH, terms).build();
+		}
+
+		/** Matches: /items/[_id]/body/ */
+		public static Uri buildBodyUri(long _id) {
+			return buildItemUri(_id).buildUpon().appendPath("body").build();
+		}
+
         /** Read item ID item detail URI. */
         public static long getItemId(Uri itemUri) {
             return Long.parseLong(itemUri.getPathSegments().get(1));
@@ -1,37 +1,198 @@
 package com.example.xyzreader.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.example.xyzreader.data.ItemsProvider.Tables;
 
 public class ItemsDatabase extends SQLiteOpenHelper {
-    private static final String DATABASE_NAME = "xyzreader.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final String TAG = "ItemsDatabase";
+
+    static final String DATABASE_NAME = "xyzreader.db";
+    static final int DATABASE_VERSION = 9;
+
+    // Rows written since the last checkpoint before the WAL is folded back into the database
+    private static final int CHECKPOINT_THRESHOLD = 500;
+    // Prepared statements kept per connection, the platform default is 25
+    private static final int MAX_SQL_CACHE_SIZE = 50;
+
+    private final AtomicInteger mWritesSinceCheckpoint = new AtomicInteger();
 
     public ItemsDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        // With a write-ahead log the list and detail queries read from their own pooled
+        // connections and are not blocked while a sync holds the write transaction.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Room for every distinct statement the provider and sync run, so none get recompiled
+        db.setMaxSqlCacheSize(MAX_SQL_CACHE_SIZE);
+        // In WAL mode NORMAL can only lose the last commits on power loss, never corrupt the
+        // file, and the next sync would restore them anyway.
+        db.execSQL("PRAGMA synchronous=NORMAL");
+    }
+
+    /**
+     * Records that {@code rowCount} rows were committed and, once enough have piled up, copies
+     * the write-ahead log back into the database. The checkpoint is passive so it never waits
+     * on readers; whatever it can't copy now is picked up next time.
+     */
+    void onWritesCommitted(SQLiteDatabase db, int rowCount) {
+        if (mWritesSinceCheckpoint.addAndGet(rowCount) < CHECKPOINT_THRESHOLD
+                || db.inTransaction()) {
+            // Nested in an outer batch, wait for that one to commit
+            return;
+        }
+        mWritesSinceCheckpoint.set(0);
+        final Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            if (cursor.moveToFirst()) {
+                Log.d(TAG, "Checkpointed " + cursor.getInt(2) + " of "
+                        + cursor.getInt(1) + " WAL frames");
+            }
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createItemsTable(db);
+        createItemBodiesTable(db);
+        createSearchTable(db);
+        createSyncMetaTable(db);
+        createItemUpdatesTable(db);
+    }
+
+    private static void createItemsTable(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE " + Tables.ITEMS + " ("
                 + ItemsContract.ItemsColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
                 + ItemsContract.ItemsColumns.SERVER_ID + " TEXT,"
                 + ItemsContract.ItemsColumns.TITLE + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.AUTHOR + " TEXT NOT NULL,"
-                + ItemsContract.ItemsColumns.BODY + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.THUMB_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.PHOTO_URL + " TEXT NOT NULL,"
                 + ItemsContract.ItemsColumns.ASPECT_RATIO + " REAL NOT NULL DEFAULT 1.5,"
-                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " TEXT NOT NULL"
+                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " INTEGER NOT NULL DEFAULT 0,"
+                + ItemsContract.ItemsColumns.CONTENT_HASH + " TEXT,"
+                + ItemsContract.ItemsColumns.SYNC_GENERATION + " INTEGER NOT NULL DEFAULT 0,"
+                + ItemsContract.ItemsColumns.MUTED_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.DARK_MUTED_COLOR + " INTEGER"
                 + ")" );
+
+        // Sync diffs the feed against the table by server id, so it has to be unique
+        db.execSQL("CREATE UNIQUE INDEX " + Tables.ITEMS + "_" + ItemsContract.ItemsColumns.SERVER_ID
+                + "_idx ON " + Tables.ITEMS + " (" + ItemsContract.ItemsColumns.SERVER_ID + ")");
+
+        // Backs ItemsContract.Items.DEFAULT_SORT
+        db.execSQL("CREATE INDEX " + Tables.ITEMS + "_" + ItemsContract.ItemsColumns.PUBLISHED_DATE
+                + "_idx ON " + Tables.ITEMS
+                + " (" + ItemsContract.ItemsColumns.PUBLISHED_DATE + " DESC)");
+    }
+
+    private static void createItemBodiesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.ITEM_BODIES + " ("
+                + ItemsContract.BodyColumns.ITEM_ID + " INTEGER PRIMARY KEY,"
+                + ItemsContract.BodyColumns.BODY + " TEXT NOT NULL"
+                + ")");
+
+        // Bodies go away with their article
+        db.execSQL("CREATE TRIGGER " + Tables.ITEM_BODIES + "_delete AFTER DELETE ON "
+                + Tables.ITEMS + " BEGIN DELETE FROM " + Tables.ITEM_BODIES
+                + " WHERE " + ItemsContract.BodyColumns.ITEM_ID + "=old."
+                + ItemsContract.ItemsColumns._ID + "; END");
+    }
+
+    /**
+     * Full-text index over titles, authors and bodies. Its docid is the article's _ID and
+     * triggers keep it in step with both tables, so writers never touch it directly.
+     */
+    private static void createSearchTable(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + Tables.ITEMS_SEARCH + " USING fts4("
+                + ItemsContract.ItemsColumns.TITLE + ","
+                + ItemsContract.ItemsColumns.AUTHOR + ","
+                + ItemsContract.BodyColumns.BODY
+                + ")");
+
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_item_insert AFTER INSERT ON "
+                + Tables.ITEMS + " BEGIN INSERT INTO " + Tables.ITEMS_SEARCH + " (docid,"
+                + ItemsContract.ItemsColumns.TITLE + "," + ItemsContract.ItemsColumns.AUTHOR + ","
+                + ItemsContract.BodyColumns.BODY + ") VALUES (new." + ItemsContract.ItemsColumns._ID
+                + ",new." + ItemsContract.ItemsColumns.TITLE
+                + ",new." + ItemsContract.ItemsColumns.AUTHOR + ",''); END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_item_update AFTER UPDATE OF "
+                + ItemsContract.ItemsColumns.TITLE + "," + ItemsContract.ItemsColumns.AUTHOR
+                + " ON " + Tables.ITEMS + " BEGIN UPDATE " + Tables.ITEMS_SEARCH + " SET "
+                + ItemsContract.ItemsColumns.TITLE + "=new." + ItemsContract.ItemsColumns.TITLE + ","
+                + ItemsContract.ItemsColumns.AUTHOR + "=new." + ItemsContract.ItemsColumns.AUTHOR
+                + " WHERE docid=new." + ItemsContract.ItemsColumns._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_item_delete AFTER DELETE ON "
+                + Tables.ITEMS + " BEGIN DELETE FROM " + Tables.ITEMS_SEARCH
+                + " WHERE docid=old." + ItemsContract.ItemsColumns._ID + "; END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_body_insert AFTER INSERT ON "
+                + Tables.ITEM_BODIES + " BEGIN UPDATE " + Tables.ITEMS_SEARCH + " SET "
+                + ItemsContract.BodyColumns.BODY + "=new." + ItemsContract.BodyColumns.BODY
+                + " WHERE docid=new." + ItemsContract.BodyColumns.ITEM_ID + "; END");
+        db.execSQL("CREATE TRIGGER " + Tables.ITEMS_SEARCH + "_body_update AFTER UPDATE ON "
+                + Tables.ITEM_BODIES + " BEGIN UPDATE " + Tables.ITEMS_SEARCH + " SET "
+                + ItemsContract.BodyColumns.BODY + "=new." + ItemsContract.BodyColumns.BODY
+                + " WHERE docid=new." + ItemsContract.BodyColumns.ITEM_ID + "; END");
+    }
+
+    /**
+     * Name/value pairs describing the sync state. Holds the published sync generation; rows of
+     * later generations are hidden from queries until the sync that wrote them completes.
+     */
+    private static void createSyncMetaTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.SYNC_META + " ("
+                + ItemsProvider.SyncMetaColumns.NAME + " TEXT PRIMARY KEY,"
+                + ItemsProvider.SyncMetaColumns.VALUE + " INTEGER NOT NULL"
+                + ")");
+        db.execSQL("INSERT INTO " + Tables.SYNC_META + " VALUES ('"
+                + ItemsProvider.SyncMetaColumns.PUBLISHED_GENERATION + "',0)");
+    }
+
+    /**
+     * New values for published articles, written by a sync and applied when its generation is
+     * published. Holds the columns the sync writes, a NULL body leaves the stored one alone.
+     */
+    private static void createItemUpdatesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + Tables.ITEM_UPDATES + " ("
+                + ItemsContract.ItemsColumns.SERVER_ID + " TEXT PRIMARY KEY,"
+                + ItemsContract.ItemsColumns.TITLE + " TEXT,"
+                + ItemsContract.ItemsColumns.AUTHOR + " TEXT,"
+                + ItemsContract.BodyColumns.BODY + " TEXT,"
+                + ItemsContract.ItemsColumns.THUMB_URL + " TEXT,"
+                + ItemsContract.ItemsColumns.PHOTO_URL + " TEXT,"
+                + ItemsContract.ItemsColumns.ASPECT_RATIO + " REAL,"
+                + ItemsContract.ItemsColumns.PUBLISHED_DATE + " INTEGER,"
+                + ItemsContract.ItemsColumns.CONTENT_HASH + " TEXT,"
+                + ItemsContract.ItemsColumns.MUTED_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.DARK_MUTED_COLOR + " INTEGER,"
+                + ItemsContract.ItemsColumns.SYNC_GENERATION + " INTEGER NOT NULL"
+                + ")");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (ItemsMigrations.canMigrate(oldVersion, newVersion)) {
+            ItemsMigrations.migrate(db, oldVersion, newVersion);
+            return;
+        }
+
+        // Too old to migrate, start over and let the next sync refill the table
         db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEM_BODIES);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEMS_SEARCH);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.SYNC_META);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ITEM_UPDATES);
         onCreate(db);
     }
 }
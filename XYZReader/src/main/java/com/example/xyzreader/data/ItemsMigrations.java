@@ -0,0 +1,260 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import static com.example.xyzreader.data.ItemsProvider.Tables;
+
+/**
+ * Registry of the stepwise schema migrations for {@link ItemsDatabase}, one per version.
+ *
+ * <p>Each migration takes the schema from the previous version to its own and must keep the
+ * existing rows. Migrations spell out their SQL instead of reusing {@link ItemsDatabase}'s
+ * create statements, so that they keep producing the same schema when later versions change
+ * the tables again.
+ */
+final class ItemsMigrations {
+
+    /** Oldest version that can still be migrated, anything older is recreated from scratch. */
+    static final int MIN_MIGRATABLE_VERSION = 2;
+
+    interface Migration {
+        void migrate(SQLiteDatabase db);
+    }
+
+    private static final SparseArray<Migration> sMigrations = new SparseArray<Migration>();
+
+    static {
+        sMigrations.put(3, new Migration() {
+            /** Adds the content hash and makes server ids unique for diff-based sync. */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN content_hash TEXT");
+                // The old delete-then-insert sync never produced duplicates, but keep only the
+                // newest row per server id so the unique index can be built regardless
+                db.execSQL("DELETE FROM " + Tables.ITEMS + " WHERE server_id IS NOT NULL"
+                        + " AND _id NOT IN (SELECT MAX(_id) FROM " + Tables.ITEMS
+                        + " WHERE server_id IS NOT NULL GROUP BY server_id)");
+                db.execSQL("CREATE UNIQUE INDEX items_server_id_idx ON " + Tables.ITEMS
+                        + " (server_id)");
+            }
+        });
+
+        sMigrations.put(4, new Migration() {
+            /**
+             * Stores published_date as INTEGER epoch millis. SQLite cannot change a column type
+             * in place, so the table is rebuilt and existing dates are converted row by row.
+             */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                final String oldTable = Tables.ITEMS + "_v3";
+                db.execSQL("ALTER TABLE " + Tables.ITEMS + " RENAME TO " + oldTable);
+                // Index names are global, the old one has to go before the new table reuses it
+                db.execSQL("DROP INDEX IF EXISTS items_server_id_idx");
+                db.execSQL("CREATE TABLE " + Tables.ITEMS + " ("
+                        + "_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "server_id TEXT,"
+                        + "title TEXT NOT NULL,"
+                        + "author TEXT NOT NULL,"
+                        + "body TEXT NOT NULL,"
+                        + "thumb_url TEXT NOT NULL,"
+                        + "photo_url TEXT NOT NULL,"
+                        + "aspect_ratio REAL NOT NULL DEFAULT 1.5,"
+                        + "published_date INTEGER NOT NULL DEFAULT 0,"
+                        + "content_hash TEXT"
+                        + ")");
+                db.execSQL("CREATE UNIQUE INDEX items_server_id_idx ON " + Tables.ITEMS
+                        + " (server_id)");
+                db.execSQL("CREATE INDEX items_published_date_idx ON " + Tables.ITEMS
+                        + " (published_date DESC)");
+
+                final String columns = "_id,server_id,title,author,body,thumb_url,photo_url,"
+                        + "aspect_ratio,published_date,content_hash";
+                db.execSQL("INSERT INTO " + Tables.ITEMS + " (" + columns + ") SELECT "
+                        + columns + " FROM " + oldTable);
+                db.execSQL("DROP TABLE " + oldTable);
+
+                // The feed's date format when this version shipped, kept here rather than taken
+                // from PublishedDates so that this migration keeps writing the same values
+                final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
+                final SQLiteStatement update = db.compileStatement("UPDATE " + Tables.ITEMS
+                        + " SET published_date=? WHERE _id=?");
+                final Cursor cursor = db.rawQuery("SELECT _id,published_date FROM "
+                        + Tables.ITEMS + " WHERE typeof(published_date)='text'", null);
+                try {
+                    while (cursor.moveToNext()) {
+                        long date;
+                        try {
+                            date = format.parse(cursor.getString(1)).getTime();
+                        } catch (ParseException e) {
+                            date = System.currentTimeMillis();
+                        }
+                        update.bindLong(1, date);
+                        update.bindLong(2, cursor.getLong(0));
+                        update.executeUpdateDelete();
+                    }
+                } finally {
+                    cursor.close();
+                    update.close();
+                }
+            }
+        });
+
+        sMigrations.put(5, new Migration() {
+            /**
+             * Moves article bodies out of items into item_bodies, so that list queries don't
+             * drag full bodies into their cursor windows.
+             */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("CREATE TABLE " + Tables.ITEM_BODIES + " ("
+                        + "item_id INTEGER PRIMARY KEY,"
+                        + "body TEXT NOT NULL"
+                        + ")");
+                db.execSQL("INSERT INTO " + Tables.ITEM_BODIES + " (item_id,body)"
+                        + " SELECT _id,body FROM " + Tables.ITEMS);
+
+                final String oldTable = Tables.ITEMS + "_v4";
+                db.execSQL("ALTER TABLE " + Tables.ITEMS + " RENAME TO " + oldTable);
+                db.execSQL("DROP INDEX IF EXISTS items_server_id_idx");
+                db.execSQL("DROP INDEX IF EXISTS items_published_date_idx");
+                db.execSQL("CREATE TABLE " + Tables.ITEMS + " ("
+                        + "_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                        + "server_id TEXT,"
+                        + "title TEXT NOT NULL,"
+                        + "author TEXT NOT NULL,"
+                        + "thumb_url TEXT NOT NULL,"
+                        + "photo_url TEXT NOT NULL,"
+                        + "aspect_ratio REAL NOT NULL DEFAULT 1.5,"
+                        + "published_date INTEGER NOT NULL DEFAULT 0,"
+                        + "content_hash TEXT"
+                        + ")");
+                db.execSQL("CREATE UNIQUE INDEX items_server_id_idx ON " + Tables.ITEMS
+                        + " (server_id)");
+                db.execSQL("CREATE INDEX items_published_date_idx ON " + Tables.ITEMS
+                        + " (published_date DESC)");
+
+                final String columns = "_id,server_id,title,author,thumb_url,photo_url,"
+                        + "aspect_ratio,published_date,content_hash";
+                db.execSQL("INSERT INTO " + Tables.ITEMS + " (" + columns + ") SELECT "
+                        + columns + " FROM " + oldTable);
+                db.execSQL("DROP TABLE " + oldTable);
+
+                db.execSQL("CREATE TRIGGER item_bodies_delete AFTER DELETE ON " + Tables.ITEMS
+                        + " BEGIN DELETE FROM " + Tables.ITEM_BODIES
+                        + " WHERE item_id=old._id; END");
+            }
+        });
+
+        sMigrations.put(6, new Migration() {
+            /** Adds the full-text search index and fills it from the existing articles. */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("CREATE VIRTUAL TABLE " + Tables.ITEMS_SEARCH
+                        + " USING fts4(title,author,body)");
+                db.execSQL("CREATE TRIGGER items_search_item_insert AFTER INSERT ON "
+                        + Tables.ITEMS + " BEGIN INSERT INTO " + Tables.ITEMS_SEARCH
+                        + " (docid,title,author,body) VALUES (new._id,new.title,new.author,'');"
+                        + " END");
+                db.execSQL("CREATE TRIGGER items_search_item_update AFTER UPDATE OF title,author"
+                        + " ON " + Tables.ITEMS + " BEGIN UPDATE " + Tables.ITEMS_SEARCH
+                        + " SET title=new.title,author=new.author WHERE docid=new._id; END");
+                db.execSQL("CREATE TRIGGER items_search_item_delete AFTER DELETE ON "
+                        + Tables.ITEMS + " BEGIN DELETE FROM " + Tables.ITEMS_SEARCH
+                        + " WHERE docid=old._id; END");
+                db.execSQL("CREATE TRIGGER items_search_body_insert AFTER INSERT ON "
+                        + Tables.ITEM_BODIES + " BEGIN UPDATE " + Tables.ITEMS_SEARCH
+                        + " SET body=new.body WHERE docid=new.item_id; END");
+                db.execSQL("CREATE TRIGGER items_search_body_update AFTER UPDATE ON "
+                        + Tables.ITEM_BODIES + " BEGIN UPDATE " + Tables.ITEMS_SEARCH
+                        + " SET body=new.body WHERE docid=new.item_id; END");
+
+                db.execSQL("INSERT INTO " + Tables.ITEMS_SEARCH + " (docid,title,author,body)"
+                        + " SELECT i._id,i.title,i.author,IFNULL(b.body,'') FROM " + Tables.ITEMS
+                        + " i LEFT JOIN " + Tables.ITEM_BODIES + " b ON b.item_id=i._id");
+            }
+        });
+
+        sMigrations.put(7, new Migration() {
+            /** Adds sync generations. Existing rows belong to generation 0, which is published. */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE " + Tables.ITEMS
+                        + " ADD COLUMN sync_generation INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("CREATE TABLE " + Tables.SYNC_META
+                        + " (name TEXT PRIMARY KEY,value INTEGER NOT NULL)");
+                db.execSQL("INSERT INTO " + Tables.SYNC_META
+                        + " VALUES ('published_generation',0)");
+            }
+        });
+
+        sMigrations.put(8, new Migration() {
+            /** Adds the thumbnail colors taken at sync time, unknown for existing rows. */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN muted_color INTEGER");
+                db.execSQL("ALTER TABLE " + Tables.ITEMS + " ADD COLUMN dark_muted_color INTEGER");
+            }
+        });
+
+        sMigrations.put(9, new Migration() {
+            /** Adds the table sync updates to published articles wait in until publishing. */
+            @Override
+            public void migrate(SQLiteDatabase db) {
+                db.execSQL("CREATE TABLE " + Tables.ITEM_UPDATES + " ("
+                        + "server_id TEXT PRIMARY KEY,"
+                        + "title TEXT,"
+                        + "author TEXT,"
+                        + "body TEXT,"
+                        + "thumb_url TEXT,"
+                        + "photo_url TEXT,"
+                        + "aspect_ratio REAL,"
+                        + "published_date INTEGER,"
+                        + "content_hash TEXT,"
+                        + "muted_color INTEGER,"
+                        + "dark_muted_color INTEGER,"
+                        + "sync_generation INTEGER NOT NULL"
+                        + ")");
+            }
+        });
+    }
+
+    private ItemsMigrations() {
+    }
+
+    /**
+     * Whether every step from {@code oldVersion} up to {@code newVersion} is registered.
+     */
+    static boolean canMigrate(int oldVersion, int newVersion) {
+        if (oldVersion < MIN_MIGRATABLE_VERSION) {
+            return false;
+        }
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            if (sMigrations.get(version) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies each migration after {@code oldVersion} up to and including {@code newVersion},
+     * in order. Callers are expected to hold a transaction, as
+     * {@link android.database.sqlite.SQLiteOpenHelper} does around {@code onUpgrade}, so a
+     * failing step leaves the database at {@code oldVersion}.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            final Migration migration = sMigrations.get(version);
+            if (migration == null) {
+                throw new IllegalStateException("No migration to version " + version);
+            }
+            migration.migrate(db);
+        }
+    }
+}
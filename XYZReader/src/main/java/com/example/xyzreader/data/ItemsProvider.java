@@ -8,22 +8,84 @@ import android.content.ContentValues;
 import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
+import android.os.Bundle;
+import android.text.TextUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 public class ItemsProvider extends ContentProvider {
-	private SQLiteOpenHelper mOpenHelper;
+	private ItemsDatabase mOpenHelper;
+
+	// Cached copy of the published generation in Tables.SYNC_META, -1 until first read
+	private volatile long mPublishedGeneration = -1;
+	// Rows bulkInsert wrote under a sync generation since it was last published. A first sync
+	// publishes the same generation after every batch, so comparing generations alone can't
+	// tell whether a publish revealed anything.
+	private final AtomicLong mUnpublishedRowCount = new AtomicLong();
+
+	// Counters for how much work observers are asked to do, see getNotificationCount()
+	private static final AtomicLong sNotificationCount = new AtomicLong();
+	private static final AtomicLong sQueryCount = new AtomicLong();
+
+	/**
+	 * URIs changed by the batch currently running on this thread, or {@code null} when no batch
+	 * is open and changes should be notified right away.
+	 */
+	private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<Set<Uri>>();
+
+	/** One builder per binder thread, reset for every call instead of allocated. */
+	private static final ThreadLocal<SelectionBuilder> sSelectionBuilder =
+			new ThreadLocal<SelectionBuilder>() {
+				@Override
+				protected SelectionBuilder initialValue() {
+					return new SelectionBuilder();
+				}
+			};
 
 	interface Tables {
 		String ITEMS = "items";
+		String ITEM_BODIES = "item_bodies";
+		String ITEMS_SEARCH = "items_search";
+		String SYNC_META = "sync_meta";
+		String ITEM_UPDATES = "item_updates";
+	}
+
+	interface SyncMetaColumns {
+		/** Type: TEXT PRIMARY KEY */
+		String NAME = "name";
+		/** Type: INTEGER NOT NULL */
+		String VALUE = "value";
+
+		/** Name of the row holding the newest sync generation readers may see. */
+		String PUBLISHED_GENERATION = "published_generation";
 	}
 
 	private static final int ITEMS = 0;
 	private static final int ITEMS__ID = 1;
+	private static final int ITEMS__ID_BODY = 2;
+	private static final int ITEMS_SEARCH = 3;
+
+	private static final int DEFAULT_SEARCH_LIMIT = 50;
+	private static final Set<String> FTS_OPERATORS =
+			new HashSet<String>(Arrays.asList("AND", "OR", "NOT", "NEAR"));
+	private static final Pattern SEARCH_TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
 
 	private static final UriMatcher sUriMatcher = buildUriMatcher();
 
@@ -31,7 +93,9 @@ public class ItemsProvider extends ContentProvider {
 		final UriMatcher matcher = new UriMatcher(UriMatcher.NO_MATCH);
 		final String authority = ItemsContract.CONTENT_AUTHORITY;
 		matcher.addURI(authority, "items", ITEMS);
+		matcher.addURI(authority, "items/search", ITEMS_SEARCH);
 		matcher.addURI(authority, "items/#", ITEMS__ID);
+		matcher.addURI(authority, "items/#/body", ITEMS__ID_BODY);
 		return matcher;
 	}
 
@@ -46,9 +110,12 @@ public class ItemsProvider extends ContentProvider {
 		final int match = sUriMatcher.match(uri);
 		switch (match) {
 			case ITEMS:
+			case ITEMS_SEARCH:
 				return ItemsContract.Items.CONTENT_TYPE;
 			case ITEMS__ID:
 				return ItemsContract.Items.CONTENT_ITEM_TYPE;
+			case ITEMS__ID_BODY:
+				return ItemsContract.Items.CONTENT_BODY_TYPE;
 			default:
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
 		}
@@ -57,8 +124,31 @@ public class ItemsProvider extends ContentProvider {
 	@Override
 	public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
 		final SQLiteDatabase db = mOpenHelper.getReadableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-		Cursor cursor = builder.where(selection, selectionArgs).query(db, projection, sortOrder);
+		sQueryCount.incrementAndGet();
+		Cursor cursor;
+		final int match = sUriMatcher.match(uri);
+		if (match == ITEMS_SEARCH) {
+			cursor = search(db, uri, projection, selection, selectionArgs, sortOrder);
+		} else {
+			final SelectionBuilder builder = buildSelection(uri, match, obtainSelectionBuilder())
+					.where(selection, selectionArgs);
+			if ((match == ITEMS || match == ITEMS__ID) && !includesPending(uri)) {
+				builder.where(ItemsContract.Items.SYNC_GENERATION + "<=?",
+						Long.toString(getPublishedGeneration(db)));
+			}
+			String limit = null;
+			if (match == ITEMS) {
+				limit = uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_LIMIT);
+				if (limit != null && !TextUtils.isDigitsOnly(limit)) {
+					throw new IllegalArgumentException("Invalid limit in " + uri);
+				}
+				if (whereAfterPageKey(builder, uri)) {
+					// Keyset pages only line up in the order the key was taken from
+					sortOrder = ItemsContract.Items.DEFAULT_SORT;
+				}
+			}
+			cursor = builder.query(db, projection, null, null, sortOrder, limit);
+		}
         if (cursor != null) {
             cursor.setNotificationUri(getContext().getContentResolver(), uri);
         }
@@ -71,8 +161,20 @@ public class ItemsProvider extends ContentProvider {
 		final int match = sUriMatcher.match(uri);
 		switch (match) {
 			case ITEMS: {
-				final long _id = db.insertOrThrow(Tables.ITEMS, null, values);
-                getContext().getContentResolver().notifyChange(uri, null);
+				final ContentValues itemValues = new ContentValues(values);
+				final String body = removeBody(itemValues);
+				final long _id;
+				db.beginTransactionNonExclusive();
+				try {
+					_id = db.insertOrThrow(Tables.ITEMS, null, itemValues);
+					if (body != null) {
+						writeBody(db, _id, body);
+					}
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+				notifyChange(uri);
 				return ItemsContract.Items.buildItemUri(_id);
 			}
 			default: {
@@ -84,21 +186,503 @@ public class ItemsProvider extends ContentProvider {
 	@Override
 	public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).update(db, values);
+		final int match = sUriMatcher.match(uri);
+		final SelectionBuilder builder = buildSelection(uri, match, obtainSelectionBuilder())
+				.where(selection, selectionArgs);
+		final ContentValues itemValues = new ContentValues(values);
+		final String body = match != ITEMS__ID_BODY ? removeBody(itemValues) : null;
+		if (body == null) {
+			final int count = builder.update(db, itemValues);
+			if (count > 0) {
+				notifyChange(uri);
+			}
+			return count;
+		}
+
+		int count = 0;
+		db.beginTransactionNonExclusive();
+		try {
+			final Cursor cursor = builder.query(db, new String[]{ItemsContract.Items._ID}, null);
+			try {
+				while (cursor.moveToNext()) {
+					writeBody(db, cursor.getLong(0), body);
+					count++;
+				}
+			} finally {
+				cursor.close();
+			}
+			if (itemValues.size() > 0) {
+				count = builder.update(db, itemValues);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		if (count > 0) {
+			notifyChange(uri);
+		}
+		return count;
+	}
+
+	/**
+	 * Bodies are kept out of {@link Tables#ITEMS} so that list queries never page them in.
+	 * Removes the body from values meant for that table.
+	 *
+	 * @return the removed body, or {@code null} if there was none
+	 */
+	private static String removeBody(ContentValues itemValues) {
+		final String body = itemValues.getAsString(ItemsContract.Items.BODY);
+		itemValues.remove(ItemsContract.Items.BODY);
+		return body;
+	}
+
+	private static void writeBody(SQLiteDatabase db, long itemId, String body) {
+		final ContentValues bodyValues = new ContentValues(2);
+		bodyValues.put(ItemsContract.BodyColumns.ITEM_ID, itemId);
+		bodyValues.put(ItemsContract.BodyColumns.BODY, body);
+		db.insertWithOnConflict(Tables.ITEM_BODIES, null, bodyValues,
+				SQLiteDatabase.CONFLICT_REPLACE);
 	}
 
 	@Override
 	public int delete(Uri uri, String selection, String[] selectionArgs) {
 		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
 		final SelectionBuilder builder = buildSelection(uri);
-        getContext().getContentResolver().notifyChange(uri, null);
-		return builder.where(selection, selectionArgs).delete(db);
+		final int count = builder.where(selection, selectionArgs).delete(db);
+		if (count > 0) {
+			notifyChange(uri);
+		}
+		return count;
+	}
+
+	/**
+	 * Upserts every row into {@link Tables#ITEMS}, keyed on
+	 * {@link ItemsContract.Items#SERVER_ID}. The UPDATE and INSERT statements are compiled once
+	 * and re-bound for each row instead of being rebuilt per row as {@link #insert} does.
+	 * Rows without a server id are always inserted.
+	 *
+	 * <p>Rows are committed in transactions of
+	 * {@link ItemsContract.Items#QUERY_PARAMETER_CHUNK_SIZE} rows, all of them by default, and
+	 * observers are notified once at the end if any chunk committed. A failing row only rolls
+	 * back its own chunk; the chunks before it stay committed. When called inside an outer transaction, such as from
+	 * {@link #applyBatch}, the chunks can't commit on their own and yield to readers instead.
+	 * New rows take the generation in
+	 * {@link ItemsContract.Items#QUERY_PARAMETER_SYNC_GENERATION}, if there is one, and
+	 * updates to published rows are staged until it is published, see {@link ItemsUpserter}.
+	 * Such inserts change nothing readers can see and don't notify.
+	 */
+	@Override
+	public int bulkInsert(Uri uri, ContentValues[] values) {
+		final int match = sUriMatcher.match(uri);
+		if (match != ITEMS) {
+			throw new UnsupportedOperationException("Unknown uri: " + uri);
+		}
+
+		final int chunkSize = getIntParameter(uri, ItemsContract.Items.QUERY_PARAMETER_CHUNK_SIZE,
+				values.length);
+		final String generation =
+				uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_SYNC_GENERATION);
+		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+		final ItemsUpserter upserter = new ItemsUpserter(db,
+				generation != null ? Long.parseLong(generation) : -1);
+		final boolean ownsBatch = beginNotificationBatch();
+		boolean committed = false;
+		try {
+			int start = 0;
+			while (start < values.length) {
+				final int end = Math.min(start + Math.max(chunkSize, 1), values.length);
+				db.beginTransactionNonExclusive();
+				try {
+					for (int i = start; i < end; i++) {
+						upserter.upsert(values[i]);
+					}
+					db.setTransactionSuccessful();
+				} finally {
+					db.endTransaction();
+				}
+				committed = true;
+				mOpenHelper.onWritesCommitted(db, end - start);
+				if (generation == null) {
+					// A sync's rows are hidden or staged until it publishes, which notifies
+					notifyChange(ItemsContract.Items.buildDirUri());
+				}
+				if (db.inTransaction()) {
+					db.yieldIfContendedSafely();
+				}
+				start = end;
+			}
+		} finally {
+			if (generation != null) {
+				mUnpublishedRowCount.addAndGet(upserter.getWrittenCount());
+			}
+			upserter.close();
+			// Always closed, a batch left open would swallow this thread's later notifications
+			if (ownsBatch) {
+				endNotificationBatch(committed);
+			}
+		}
+		return values.length;
+	}
+
+	/**
+	 * Handles {@link ItemsContract.Items#METHOD_BEGIN_SYNC_GENERATION} and
+	 * {@link ItemsContract.Items#METHOD_PUBLISH_SYNC_GENERATION}.
+	 */
+	@Override
+	public Bundle call(String method, String arg, Bundle extras) {
+		final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+		if (ItemsContract.Items.METHOD_BEGIN_SYNC_GENERATION.equals(method)) {
+			// Updates staged by an interrupted sync are dropped, the new one stages them again
+			db.delete(Tables.ITEM_UPDATES, null, null);
+			// Rows an interrupted sync left hidden are found by the generation check instead
+			mUnpublishedRowCount.set(0);
+			final Bundle result = new Bundle();
+			result.putLong(ItemsContract.Items.EXTRA_SYNC_GENERATION,
+					getPublishedGeneration(db) + 1);
+			return result;
+		}
+		if (ItemsContract.Items.METHOD_PUBLISH_SYNC_GENERATION.equals(method)) {
+			publishSyncGeneration(db,
+					extras.getLong(ItemsContract.Items.EXTRA_SYNC_GENERATION),
+					extras.getLongArray(ItemsContract.Items.EXTRA_STALE_IDS));
+			return null;
+		}
+		return super.call(method, arg, extras);
+	}
+
+	/**
+	 * Applies the staged updates, deletes the stale rows and publishes the generation in one
+	 * transaction, so readers go from the previous generation's articles to the new ones in a
+	 * single step. Observers are notified once, if anything they can see changed: rows of a
+	 * generation newer than the published one, rows {@link #bulkInsert} wrote since the last
+	 * publish, applied updates or deleted rows.
+	 */
+	private void publishSyncGeneration(SQLiteDatabase db, long generation, long[] staleIds) {
+		int count = 0;
+		boolean revealed;
+		long written;
+		db.beginTransactionNonExclusive();
+		try {
+			final long previous = getPublishedGeneration(db);
+			revealed = DatabaseUtils.longForQuery(db, "SELECT EXISTS(SELECT 1 FROM "
+					+ Tables.ITEMS + " WHERE " + ItemsContract.Items.SYNC_GENERATION + ">? AND "
+					+ ItemsContract.Items.SYNC_GENERATION + "<=?)",
+					new String[]{Long.toString(previous), Long.toString(generation)}) != 0;
+			// Also covers rows written under a generation that is already published
+			written = mUnpublishedRowCount.get();
+			revealed |= written > 0;
+			count += applyStagedUpdates(db, generation);
+			if (staleIds != null) {
+				for (long staleId : staleIds) {
+					count += db.delete(Tables.ITEMS, ItemsContract.Items._ID + "=?",
+							new String[]{Long.toString(staleId)});
+				}
+			}
+			final ContentValues values = new ContentValues(1);
+			values.put(SyncMetaColumns.VALUE, generation);
+			db.update(Tables.SYNC_META, values, SyncMetaColumns.NAME + "=?",
+					new String[]{SyncMetaColumns.PUBLISHED_GENERATION});
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+
+		mPublishedGeneration = generation;
+		// Rows written meanwhile stay counted for the next publish
+		mUnpublishedRowCount.addAndGet(-written);
+		mOpenHelper.onWritesCommitted(db, count + 1);
+		if (revealed || count > 0) {
+			notifyChange(ItemsContract.Items.buildDirUri());
+		}
+	}
+
+	/**
+	 * Writes the updates staged for {@code generation} and earlier into their rows.
+	 *
+	 * @return the number of rows updated
+	 */
+	private static int applyStagedUpdates(SQLiteDatabase db, long generation) {
+		final Cursor cursor = db.query(Tables.ITEM_UPDATES, null,
+				ItemsContract.Items.SYNC_GENERATION + "<=?",
+				new String[]{Long.toString(generation)}, null, null, null);
+		final ItemsUpserter upserter = new ItemsUpserter(db);
+		int count = 0;
+		try {
+			final ContentValues values = new ContentValues();
+			while (cursor.moveToNext()) {
+				values.clear();
+				for (int i = 0; i < cursor.getColumnCount(); i++) {
+					final String column = cursor.getColumnName(i);
+					switch (cursor.getType(i)) {
+						case Cursor.FIELD_TYPE_INTEGER:
+							values.put(column, cursor.getLong(i));
+							break;
+						case Cursor.FIELD_TYPE_FLOAT:
+							values.put(column, cursor.getDouble(i));
+							break;
+						case Cursor.FIELD_TYPE_NULL:
+							values.putNull(column);
+							break;
+						default:
+							values.put(column, cursor.getString(i));
+							break;
+					}
+				}
+				values.remove(ItemsContract.Items.SYNC_GENERATION);
+				if (values.get(ItemsContract.Items.BODY) == null) {
+					values.remove(ItemsContract.Items.BODY);
+				}
+				upserter.upsert(values);
+				count++;
+			}
+		} finally {
+			cursor.close();
+			upserter.close();
+		}
+		db.delete(Tables.ITEM_UPDATES, ItemsContract.Items.SYNC_GENERATION + "<=?",
+				new String[]{Long.toString(generation)});
+		return count;
+	}
+
+	private long getPublishedGeneration(SQLiteDatabase db) {
+		long generation = mPublishedGeneration;
+		if (generation < 0) {
+			generation = DatabaseUtils.longForQuery(db, "SELECT " + SyncMetaColumns.VALUE
+					+ " FROM " + Tables.SYNC_META + " WHERE " + SyncMetaColumns.NAME + "=?",
+					new String[]{SyncMetaColumns.PUBLISHED_GENERATION});
+			mPublishedGeneration = generation;
+		}
+		return generation;
+	}
+
+	private static boolean includesPending(Uri uri) {
+		return "1".equals(uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_INCLUDE_PENDING));
+	}
+
+	private static int getIntParameter(Uri uri, String name, int defaultValue) {
+		final String value = uri.getQueryParameter(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		if (value.isEmpty() || !TextUtils.isDigitsOnly(value)) {
+			throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+		}
+		return Integer.parseInt(value);
+	}
+
+	/**
+	 * Restricts the selection to rows after the page key in the URI, if it has one. The first
+	 * comparison lets SQLite seek straight into the published_date index, the second drops the
+	 * rows of the same date that were already on the previous page.
+	 *
+	 * @return whether the URI carried a page key
+	 */
+	private static boolean whereAfterPageKey(SelectionBuilder builder, Uri uri) {
+		final String afterDate = uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_AFTER_DATE);
+		final String afterId = uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_AFTER_ID);
+		if (afterDate == null || afterId == null) {
+			return false;
+		}
+		builder.where(ItemsContract.Items.PUBLISHED_DATE + "<=?", afterDate)
+				.where(ItemsContract.Items.PUBLISHED_DATE + "<? OR ("
+						+ ItemsContract.Items.PUBLISHED_DATE + "=? AND "
+						+ ItemsContract.Items._ID + ">?)", afterDate, afterDate, afterId);
+		return true;
+	}
+
+	/**
+	 * Runs a full-text query against {@link Tables#ITEMS_SEARCH}, which triggers keep in sync
+	 * with the articles and their bodies. Rows are ranked by how many times the terms occur,
+	 * then by recency, unless the caller asks for another order.
+	 *
+	 * <p>Ranking takes two queries. The first reads the hit counts of every match from the
+	 * index through matchinfo(), which never loads the article text, and keeps the best
+	 * {@code limit} ids. The second fetches only those rows, so snippet() re-reads the text of
+	 * the returned rows and nothing else.
+	 */
+	private Cursor search(SQLiteDatabase db, Uri uri, String[] projection, String selection,
+			String[] selectionArgs, String sortOrder) {
+		final String match = buildMatchQuery(
+				uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_SEARCH));
+		if (match == null) {
+			return new MatrixCursor(projection != null ? projection : SEARCH_DEFAULT_PROJECTION);
+		}
+		String limit = uri.getQueryParameter(ItemsContract.Items.QUERY_PARAMETER_LIMIT);
+		if (limit == null || limit.isEmpty() || !TextUtils.isDigitsOnly(limit)) {
+			limit = Integer.toString(DEFAULT_SEARCH_LIMIT);
+		}
+		final String published = Long.toString(getPublishedGeneration(db));
+
+		String idSelection = null;
+		if (sortOrder == null) {
+			final long[] ids = rankSearchResults(db, match, published, selection, selectionArgs,
+					Integer.parseInt(limit));
+			if (ids.length == 0) {
+				return new MatrixCursor(projection != null ? projection : SEARCH_DEFAULT_PROJECTION);
+			}
+			// Ids are numbers, inlining them keeps the statement short of bind arguments
+			final StringBuilder in = new StringBuilder(ids.length * 8);
+			final StringBuilder order = new StringBuilder(ids.length * 16);
+			order.append("CASE ").append(Tables.ITEMS).append('.')
+					.append(ItemsContract.Items._ID);
+			for (int i = 0; i < ids.length; i++) {
+				in.append(i > 0 ? "," : "").append(ids[i]);
+				order.append(" WHEN ").append(ids[i]).append(" THEN ").append(i);
+			}
+			idSelection = Tables.ITEMS + "." + ItemsContract.Items._ID + " IN (" + in + ")";
+			sortOrder = order.append(" END").toString();
+			limit = null;
+		}
+
+		final SelectionBuilder builder = whereSearchMatches(obtainSelectionBuilder(), match,
+				published)
+				.map(ItemsContract.Items.SNIPPET, "snippet(" + Tables.ITEMS_SEARCH
+						+ ",'<b>','</b>','\u2026',-1,12)")
+				.where(selection, selectionArgs)
+				.where(idSelection);
+		for (String column : SEARCH_DEFAULT_PROJECTION) {
+			if (!ItemsContract.Items.SNIPPET.equals(column)) {
+				builder.map(column, Tables.ITEMS + "." + column);
+			}
+		}
+
+		// SelectionBuilder maps columns in place, don't touch the caller's array
+		final String[] columns = (projection != null ? projection : SEARCH_DEFAULT_PROJECTION)
+				.clone();
+		return builder.query(db, columns, null, null, sortOrder, limit);
+	}
+
+	private static SelectionBuilder whereSearchMatches(SelectionBuilder builder, String match,
+			String publishedGeneration) {
+		return builder
+				.table(Tables.ITEMS_SEARCH + " JOIN " + Tables.ITEMS + " ON "
+						+ Tables.ITEMS + "." + ItemsContract.Items._ID + "="
+						+ Tables.ITEMS_SEARCH + ".docid")
+				.where(Tables.ITEMS_SEARCH + " MATCH ?", match)
+				.where(Tables.ITEMS + "." + ItemsContract.Items.SYNC_GENERATION + "<=?",
+						publishedGeneration);
+	}
+
+	/**
+	 * Columns of the ranking query. matchinfo() with 'pcx' returns 32-bit integers in native
+	 * byte order: the number of phrases, the number of columns, then three numbers per phrase
+	 * and column of which the first is the hits in this row.
+	 */
+	private static final String[] SEARCH_RANK_COLUMNS = {
+			Tables.ITEMS + "." + ItemsContract.Items._ID,
+			Tables.ITEMS + "." + ItemsContract.Items.PUBLISHED_DATE,
+			"matchinfo(" + Tables.ITEMS_SEARCH + ",'pcx')",
+	};
+
+	/**
+	 * @return the ids of the best {@code limit} matches, by hit count and then recency, best
+	 * first
+	 */
+	private static long[] rankSearchResults(SQLiteDatabase db, String match,
+			String publishedGeneration, String selection, String[] selectionArgs, int limit) {
+		if (limit <= 0) {
+			return new long[0];
+		}
+		// Worst of the kept rows at the head, each row is {hits, published date, id}
+		final PriorityQueue<long[]> best = new PriorityQueue<long[]>(
+				Math.min(limit, DEFAULT_SEARCH_LIMIT) + 1, new Comparator<long[]>() {
+					@Override
+					public int compare(long[] a, long[] b) {
+						if (a[0] != b[0]) {
+							return a[0] < b[0] ? -1 : 1;
+						}
+						if (a[1] != b[1]) {
+							return a[1] < b[1] ? -1 : 1;
+						}
+						return a[2] > b[2] ? -1 : (a[2] == b[2] ? 0 : 1);
+					}
+				});
+		final Cursor cursor = whereSearchMatches(obtainSelectionBuilder(), match,
+				publishedGeneration)
+				.where(selection, selectionArgs)
+				.query(db, SEARCH_RANK_COLUMNS.clone(), null);
+		try {
+			while (cursor.moveToNext()) {
+				final long[] row = {countHits(cursor.getBlob(2)), cursor.getLong(1),
+						cursor.getLong(0)};
+				best.add(row);
+				if (best.size() > limit) {
+					best.poll();
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+
+		final long[] ids = new long[best.size()];
+		for (int i = ids.length - 1; i >= 0; i--) {
+			ids[i] = best.poll()[2];
+		}
+		return ids;
+	}
+
+	private static long countHits(byte[] matchInfo) {
+		final IntBuffer ints = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder())
+				.asIntBuffer();
+		final int cells = ints.get(0) * ints.get(1);
+		long hits = 0;
+		for (int i = 0; i < cells; i++) {
+			hits += ints.get(2 + i * 3) & 0xFFFFFFFFL;
+		}
+		return hits;
+	}
+
+	private static final String[] SEARCH_DEFAULT_PROJECTION = {
+			ItemsContract.Items._ID,
+			ItemsContract.Items.TITLE,
+			ItemsContract.Items.PUBLISHED_DATE,
+			ItemsContract.Items.AUTHOR,
+			ItemsContract.Items.THUMB_URL,
+			ItemsContract.Items.PHOTO_URL,
+			ItemsContract.Items.ASPECT_RATIO,
+			ItemsContract.Items.CONTENT_HASH,
+			ItemsContract.Items.MUTED_COLOR,
+			ItemsContract.Items.DARK_MUTED_COLOR,
+			ItemsContract.Items.SNIPPET,
+	};
+
+	/**
+	 * Turns free text typed by the user into an FTS MATCH expression. Every word has to match,
+	 * the last one as a prefix so results show up while typing. Punctuation is dropped since
+	 * it would otherwise be read as FTS query syntax.
+	 *
+	 * @return the expression, or {@code null} if there is nothing to search for
+	 */
+	static String buildMatchQuery(String terms) {
+		if (terms == null) {
+			return null;
+		}
+		final StringBuilder match = new StringBuilder(terms.length() + 2);
+		for (String token : SEARCH_TOKEN_SEPARATOR.split(terms)) {
+			if (token.isEmpty()) {
+				continue;
+			}
+			if (match.length() > 0) {
+				match.append(' ');
+			}
+			if (FTS_OPERATORS.contains(token)) {
+				// Operators only count in upper case
+				token = token.toLowerCase(Locale.US);
+			}
+			match.append(token);
+		}
+		if (match.length() == 0) {
+			return null;
+		}
+		return match.append('*').toString();
+	}
+
+	private static SelectionBuilder obtainSelectionBuilder() {
+		return sSelectionBuilder.get().reset();
 	}
 
 	private SelectionBuilder buildSelection(Uri uri) {
-		final SelectionBuilder builder = new SelectionBuilder();
+		final SelectionBuilder builder = obtainSelectionBuilder();
 		final int match = sUriMatcher.match(uri);
 		return buildSelection(uri, match, builder);
 	}
@@ -113,6 +697,11 @@ public class ItemsProvider extends ContentProvider {
 				final String _id = paths.get(1);
 				return builder.table(Tables.ITEMS).where(ItemsContract.Items._ID + "=?", _id);
 			}
+			case ITEMS__ID_BODY: {
+				final String _id = paths.get(1);
+				return builder.table(Tables.ITEM_BODIES)
+						.where(ItemsContract.BodyColumns.ITEM_ID + "=?", _id);
+			}
 			default: {
 				throw new UnsupportedOperationException("Unknown uri: " + uri);
 			}
@@ -122,22 +711,115 @@ public class ItemsProvider extends ContentProvider {
     /**
      * Apply the given set of {@link ContentProviderOperation}, executing inside
      * a {@link SQLiteDatabase} transaction. All changes will be rolled back if
-     * any single one fails.
+     * any single one fails, except for those committed at an operation that
+     * {@link ContentProviderOperation#isYieldAllowed() allows yielding}.
      */
     public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
             throws OperationApplicationException {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-        db.beginTransaction();
+        final boolean ownsBatch = beginNotificationBatch();
+        boolean successful = false;
+        db.beginTransactionNonExclusive();
         try {
             final int numOperations = operations.size();
             final ContentProviderResult[] results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
-                results[i] = operations.get(i).apply(this, results, i);
+                final ContentProviderOperation operation = operations.get(i);
+                if (i > 0 && operation.isYieldAllowed()) {
+                    // Lets waiting readers in between, committing what has been applied so far
+                    db.yieldIfContendedSafely();
+                }
+                results[i] = operation.apply(this, results, i);
             }
             db.setTransactionSuccessful();
+            successful = true;
             return results;
         } finally {
             db.endTransaction();
+            if (successful) {
+                mOpenHelper.onWritesCommitted(db, operations.size());
+            }
+            if (ownsBatch) {
+                endNotificationBatch(successful);
+            }
+        }
+    }
+
+    /**
+     * Notifies observers of a change to {@code uri}, or defers the notification until the
+     * batch open on this thread has committed.
+     */
+    private void notifyChange(Uri uri) {
+        final Set<Uri> pending = mPendingNotifications.get();
+        if (pending != null) {
+            pending.add(uri);
+        } else {
+            sNotificationCount.incrementAndGet();
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Starts collecting change notifications on this thread instead of sending them.
+     *
+     * @return {@code true} if this call opened the batch and must end it, {@code false} if a
+     * batch was already open (e.g. {@link #bulkInsert} called from {@link #applyBatch})
+     */
+    private boolean beginNotificationBatch() {
+        if (mPendingNotifications.get() != null) {
+            return false;
+        }
+        mPendingNotifications.set(new LinkedHashSet<Uri>());
+        return true;
+    }
+
+    /**
+     * Closes the batch opened on this thread and, if it committed, sends one notification per
+     * changed URI. A URI is skipped when one of its ancestors is notified anyway, since
+     * observers of descendant URIs are notified along with their ancestors.
+     */
+    private void endNotificationBatch(boolean successful) {
+        final Set<Uri> pending = mPendingNotifications.get();
+        mPendingNotifications.remove();
+        if (!successful || pending == null) {
+            return;
+        }
+
+        for (Uri uri : pending) {
+            if (!hasPendingAncestor(pending, uri)) {
+                sNotificationCount.incrementAndGet();
+                getContext().getContentResolver().notifyChange(uri, null);
+            }
+        }
+    }
+
+    private static boolean hasPendingAncestor(Set<Uri> pending, Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        final Uri.Builder ancestor = new Uri.Builder()
+                .scheme(uri.getScheme())
+                .authority(uri.getAuthority());
+        for (int i = 0; i < segments.size() - 1; i++) {
+            ancestor.appendPath(segments.get(i));
+            if (pending.contains(ancestor.build())) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    /**
+     * Number of change notifications sent to observers since the process started. Every
+     * notification can make each observing loader requery, so comparing this before and after
+     * a sync shows how many requeries the sync caused.
+     */
+    public static long getNotificationCount() {
+        return sNotificationCount.get();
+    }
+
+    /**
+     * Number of queries served since the process started.
+     */
+    public static long getQueryCount() {
+        return sQueryCount.get();
     }
 }
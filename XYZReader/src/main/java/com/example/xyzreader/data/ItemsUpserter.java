@@ -0,0 +1,233 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import static com.example.xyzreader.data.ItemsProvider.Tables;
+
+/**
+ * Writes rows into {@link Tables#ITEMS} through compiled statements, updating the row with the
+ * same {@link ItemsContract.Items#SERVER_ID} when there is one and inserting otherwise. A
+ * {@link ItemsContract.Items#BODY} in the values goes to {@link Tables#ITEM_BODIES}.
+ * Inserted rows can be stamped with a sync generation. Rows of earlier, published generations
+ * are not updated in place while a generation is being written: the new values go to
+ * {@link Tables#ITEM_UPDATES} instead and are applied when the generation is published, so
+ * readers never see part of a sync. Rows of the generation itself are still hidden and are
+ * updated in place.
+ * Statements are compiled for a set of columns and only recompiled when a row comes in with a
+ * different set, so a batch of uniformly shaped rows binds arguments and nothing else.
+ * This class is <em>not</em> thread safe and must be {@link #close() closed} after use.
+ */
+class ItemsUpserter {
+    private final SQLiteDatabase mDb;
+    private final long mInsertGeneration;
+
+    private String[] mColumns;
+    private SQLiteStatement mInsert;
+    private SQLiteStatement mUpdate;
+    private SQLiteStatement mStage;
+    private SQLiteStatement mSelectId;
+    private SQLiteStatement mSelectGeneration;
+    private SQLiteStatement mWriteBody;
+    // Rows inserted or updated in place, as opposed to staged
+    private int mWrittenCount;
+
+    ItemsUpserter(SQLiteDatabase db) {
+        this(db, -1);
+    }
+
+    /**
+     * @param insertGeneration {@link ItemsContract.Items#SYNC_GENERATION} of inserted and staged
+     * rows, or -1 to update in place and leave the generation to the values and the column
+     * default
+     */
+    ItemsUpserter(SQLiteDatabase db, long insertGeneration) {
+        mDb = db;
+        mInsertGeneration = insertGeneration;
+    }
+
+    void upsert(ContentValues values) {
+        final String body = values.getAsString(ItemsContract.Items.BODY);
+        if (body != null) {
+            values = new ContentValues(values);
+            values.remove(ItemsContract.Items.BODY);
+        }
+        prepare(values.keySet());
+
+        long itemId = -1;
+        final String serverId = values.getAsString(ItemsContract.Items.SERVER_ID);
+        if (serverId != null && mInsertGeneration >= 0 && isPublished(serverId)) {
+            stage(values, body);
+            return;
+        }
+        if (serverId != null) {
+            bindAll(mUpdate, values);
+            mUpdate.bindString(mColumns.length + 1, serverId);
+            if (mUpdate.executeUpdateDelete() > 0) {
+                mWrittenCount++;
+                if (body == null) {
+                    return;
+                }
+                if (mSelectId == null) {
+                    mSelectId = mDb.compileStatement("SELECT " + ItemsContract.Items._ID
+                            + " FROM " + Tables.ITEMS
+                            + " WHERE " + ItemsContract.Items.SERVER_ID + "=?");
+                }
+                mSelectId.bindString(1, serverId);
+                itemId = mSelectId.simpleQueryForLong();
+            }
+        }
+
+        if (itemId == -1) {
+            bindAll(mInsert, values);
+            if (mInsertGeneration >= 0) {
+                mInsert.bindLong(mColumns.length + 1, mInsertGeneration);
+            }
+            itemId = mInsert.executeInsert();
+            mWrittenCount++;
+        }
+
+        if (body != null) {
+            if (mWriteBody == null) {
+                mWriteBody = mDb.compileStatement("INSERT OR REPLACE INTO " + Tables.ITEM_BODIES
+                        + " (" + ItemsContract.BodyColumns.ITEM_ID + ","
+                        + ItemsContract.BodyColumns.BODY + ") VALUES (?,?)");
+            }
+            mWriteBody.bindLong(1, itemId);
+            mWriteBody.bindString(2, body);
+            mWriteBody.executeInsert();
+        }
+    }
+
+    /**
+     * @return the number of rows inserted or updated in place so far, staged rows not included
+     */
+    int getWrittenCount() {
+        return mWrittenCount;
+    }
+
+    /**
+     * @return whether the row with {@code serverId} exists and belongs to a generation before
+     * the one being written
+     */
+    private boolean isPublished(String serverId) {
+        if (mSelectGeneration == null) {
+            mSelectGeneration = mDb.compileStatement("SELECT "
+                    + ItemsContract.Items.SYNC_GENERATION + " FROM " + Tables.ITEMS
+                    + " WHERE " + ItemsContract.Items.SERVER_ID + "=?");
+        }
+        mSelectGeneration.bindString(1, serverId);
+        try {
+            return mSelectGeneration.simpleQueryForLong() < mInsertGeneration;
+        } catch (SQLiteDoneException e) {
+            return false;
+        }
+    }
+
+    private void stage(ContentValues values, String body) {
+        bindAll(mStage, values);
+        if (body != null) {
+            mStage.bindString(mColumns.length + 1, body);
+        }
+        mStage.bindLong(mColumns.length + 2, mInsertGeneration);
+        mStage.executeInsert();
+    }
+
+    void close() {
+        closeStatements();
+        if (mSelectId != null) {
+            mSelectId.close();
+            mSelectId = null;
+        }
+        if (mSelectGeneration != null) {
+            mSelectGeneration.close();
+            mSelectGeneration = null;
+        }
+        if (mWriteBody != null) {
+            mWriteBody.close();
+            mWriteBody = null;
+        }
+    }
+
+    private void prepare(Set<String> columns) {
+        if (mColumns != null && mColumns.length == columns.size()
+                && columns.containsAll(Arrays.asList(mColumns))) {
+            return;
+        }
+
+        closeStatements();
+        mColumns = columns.toArray(new String[columns.size()]);
+        Arrays.sort(mColumns);
+
+        final StringBuilder insert = new StringBuilder(128);
+        insert.append("INSERT INTO ").append(Tables.ITEMS).append(" (");
+        final StringBuilder update = new StringBuilder(128);
+        update.append("UPDATE ").append(Tables.ITEMS).append(" SET ");
+        for (int i = 0; i < mColumns.length; i++) {
+            if (i > 0) {
+                insert.append(',');
+                update.append(',');
+            }
+            insert.append(mColumns[i]);
+            update.append(mColumns[i]).append("=?");
+        }
+        if (mInsertGeneration >= 0) {
+            insert.append(',').append(ItemsContract.Items.SYNC_GENERATION);
+        }
+        insert.append(") VALUES (");
+        for (int i = 0; i < mColumns.length; i++) {
+            insert.append(i > 0 ? ",?" : "?");
+        }
+        if (mInsertGeneration >= 0) {
+            insert.append(",?");
+        }
+        insert.append(')');
+        update.append(" WHERE ").append(ItemsContract.Items.SERVER_ID).append("=?");
+
+        mInsert = mDb.compileStatement(insert.toString());
+        mUpdate = mDb.compileStatement(update.toString());
+
+        if (mInsertGeneration >= 0) {
+            final StringBuilder stage = new StringBuilder(128);
+            stage.append("INSERT OR REPLACE INTO ").append(Tables.ITEM_UPDATES).append(" (");
+            for (String column : mColumns) {
+                stage.append(column).append(',');
+            }
+            stage.append(ItemsContract.Items.BODY).append(',')
+                    .append(ItemsContract.Items.SYNC_GENERATION).append(") VALUES (");
+            for (int i = 0; i < mColumns.length; i++) {
+                stage.append("?,");
+            }
+            stage.append("?,?)");
+            mStage = mDb.compileStatement(stage.toString());
+        }
+    }
+
+    private void bindAll(SQLiteStatement statement, ContentValues values) {
+        statement.clearBindings();
+        for (int i = 0; i < mColumns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(mColumns[i]));
+        }
+    }
+
+    private void closeStatements() {
+        if (mInsert != null) {
+            mInsert.close();
+            mInsert = null;
+        }
+        if (mUpdate != null) {
+            mUpdate.close();
+            mUpdate = null;
+        }
+        if (mStage != null) {
+            mStage.close();
+            mStage = null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The article list, loaded a page at a time with keyset queries against
+ * {@link ItemsContract.Items#buildPageUri(long, long, int)}.
+ *
+ * <p>The next page is requested as reading gets close to the end of what is loaded, and pages
+ * far from the last position read are dropped, so memory stays proportional to the pages
+ * around the visible range rather than to the whole feed. Dropped pages are queried again
+ * when they are needed. All methods must be called on the main thread, loading happens on a
+ * background thread and results are reported back through the {@link Listener}.
+ *
+ * <p>When the data changes, {@link #refresh()} reloads the pages up to the current reading
+ * position and reports the rows that came, went or changed, so a list showing it keeps its
+ * place instead of starting over from the top.
+ */
+public class PagedArticleList {
+    private static final String TAG = "PagedArticleList";
+
+    public static final int DEFAULT_PAGE_SIZE = 30;
+    /** Pages kept on each side of the page last read from. */
+    public static final int DEFAULT_RETAINED_PAGES = 2;
+
+    public interface Listener {
+        void onItemRangeInserted(int positionStart, int itemCount);
+
+        void onItemRangeChanged(int positionStart, int itemCount);
+
+        void onItemRangeRemoved(int positionStart, int itemCount);
+
+        void onItemRangeMoved(int fromPosition, int toPosition);
+    }
+
+    private static class Page {
+        // Key of the row just before this page, afterId is -1 for the first page
+        final long afterDate;
+        final long afterId;
+
+        // Position of the first row and number of rows, -1 until first loaded
+        int start = -1;
+        int size = -1;
+
+        // Key of the last row, the starting point of the next page
+        long lastDate;
+        long lastId = -1;
+
+        // Ids and content hashes of the rows, kept when the articles are dropped so a refresh
+        // can tell what changed
+        long[] ids;
+        String[] hashes;
+
+        List<Article> articles;
+        boolean loading;
+
+        Page(long afterDate, long afterId) {
+            this.afterDate = afterDate;
+            this.afterId = afterId;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final ArticleRepository mRepository;
+    private final Listener mListener;
+    private final int mPageSize;
+    private final int mRetainedPages;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final ArrayList<Page> mPages = new ArrayList<Page>();
+    private int mCount;
+    private boolean mEndReached;
+    // Page of the position last read, pages around it are kept loaded
+    private int mCurrentPage;
+    // Bumped by refresh() so results of queries started before it are ignored
+    private int mGeneration;
+
+    public PagedArticleList(Context context, Listener listener) {
+        this(context, listener, DEFAULT_PAGE_SIZE, DEFAULT_RETAINED_PAGES);
+    }
+
+    public PagedArticleList(Context context, Listener listener, int pageSize,
+            int retainedPages) {
+        mResolver = context.getApplicationContext().getContentResolver();
+        mRepository = ArticleRepository.getInstance(context);
+        mListener = listener;
+        mPageSize = pageSize;
+        mRetainedPages = retainedPages;
+        appendPage();
+    }
+
+    /**
+     * Number of rows loaded so far, grows as further pages come in.
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Returns the article at the position and marks it as the current reading position, which
+     * decides what gets loaded next and what gets dropped.
+     *
+     * @return the article, or {@code null} if its page is still being loaded
+     */
+    public Article get(int position) {
+        if (position < 0 || position >= mCount) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mCount);
+        }
+
+        final int pageIndex = position / mPageSize;
+        final Page page = mPages.get(pageIndex);
+        mCurrentPage = pageIndex;
+        if (page.articles == null) {
+            load(pageIndex);
+        }
+        if (!mEndReached && position >= mCount - mPageSize / 2) {
+            appendPage();
+        }
+        dropDistantPages(pageIndex);
+
+        return page.articles != null ? page.articles.get(position - page.start) : null;
+    }
+
+    /**
+     * Returns the article at the position if its page is loaded, without loading or dropping
+     * anything, e.g. to prepare positions that are about to be shown.
+     *
+     * @return the article, or {@code null} if its page is not loaded
+     */
+    public Article peek(int position) {
+        if (position < 0 || position >= mCount) {
+            return null;
+        }
+        final Page page = mPages.get(position / mPageSize);
+        return page.articles != null ? page.articles.get(position - page.start) : null;
+    }
+
+    /**
+     * Reloads the pages from the first one up to the current reading position, e.g. after the
+     * underlying data changed, then reports the difference to what was loaded before through
+     * the {@link Listener}. Pages further down are dropped and appended again when needed.
+     */
+    public void refresh() {
+        final int generation = ++mGeneration;
+        final int targetCount = Math.max(Math.min(mCount,
+                (mCurrentPage + mRetainedPages + 1) * mPageSize), mPageSize);
+        final int currentPage = mCurrentPage;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<Page> pages = new ArrayList<Page>();
+                int count = 0;
+                Page page = new Page(0, -1);
+                while (true) {
+                    final List<Article> articles = query(page);
+                    setRows(page, count, articles);
+                    if (Math.abs(pages.size() - currentPage) > mRetainedPages) {
+                        page.articles = null;
+                    }
+                    pages.add(page);
+                    count += page.size;
+                    if (page.size < mPageSize || count >= targetCount) {
+                        break;
+                    }
+                    page = new Page(page.lastDate, page.lastId);
+                }
+
+                final int newCount = count;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            onRefreshed(pages, newCount);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops loading. The list must not be used afterwards.
+     */
+    public void close() {
+        mGeneration++;
+        mExecutor.shutdownNow();
+    }
+
+    private void appendPage() {
+        final Page lastPage = mPages.isEmpty() ? null : mPages.get(mPages.size() - 1);
+        if (lastPage != null && lastPage.size == -1) {
+            // Still waiting for the last page, its key is needed to ask for the next one
+            return;
+        }
+
+        final Page page = lastPage == null
+                ? new Page(0, -1)
+                : new Page(lastPage.lastDate, lastPage.lastId);
+        mPages.add(page);
+        load(mPages.size() - 1);
+    }
+
+    private void load(final int pageIndex) {
+        final Page page = mPages.get(pageIndex);
+        if (page.loading) {
+            return;
+        }
+        page.loading = true;
+
+        final int generation = mGeneration;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Article> articles = query(page);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            onPageLoaded(pageIndex, page, articles);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private List<Article> query(Page page) {
+        final ArrayList<Article> articles = new ArrayList<Article>(mPageSize);
+        final int version = mRepository.getVersion();
+        final Cursor cursor = mResolver.query(
+                ItemsContract.Items.buildPageUri(page.afterDate, page.afterId, mPageSize),
+                ArticleLoader.Query.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return articles;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                articles.add(Article.fromCursor(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        // Whatever is on screen in the list is likely to be opened next
+        mRepository.putAll(articles, version);
+        return articles;
+    }
+
+    private void onPageLoaded(int pageIndex, Page page, List<Article> articles) {
+        page.loading = false;
+
+        if (page.size == -1) {
+            setRows(page, mCount, articles);
+            if (page.size < mPageSize) {
+                mEndReached = true;
+            }
+            mCount += page.size;
+            if (page.size > 0) {
+                mListener.onItemRangeInserted(page.start, page.size);
+            }
+            return;
+        }
+
+        if (articles.size() != page.size || (page.size > 0
+                && articles.get(page.size - 1).getId() != page.lastId)) {
+            // Rows came or went since this page was first loaded, positions no longer line up
+            Log.d(TAG, "Page " + pageIndex + " changed, refreshing");
+            refresh();
+            return;
+        }
+        setRows(page, page.start, articles);
+        mListener.onItemRangeChanged(page.start, page.size);
+    }
+
+    private static void setRows(Page page, int start, List<Article> articles) {
+        page.start = start;
+        page.size = articles.size();
+        page.articles = articles;
+        page.ids = new long[page.size];
+        page.hashes = new String[page.size];
+        for (int i = 0; i < page.size; i++) {
+            page.ids[i] = articles.get(i).getId();
+            page.hashes[i] = articles.get(i).getContentHash();
+        }
+        if (page.size > 0) {
+            final Article last = articles.get(page.size - 1);
+            page.lastDate = last.getPublishedDate();
+            page.lastId = last.getId();
+        }
+    }
+
+    /**
+     * Swaps in the refreshed pages and reports how they differ from the ones shown so far.
+     * Rows count as changed when their content did or they weren't loaded before, so the
+     * placeholders of rows that were being loaded get bound.
+     */
+    private void onRefreshed(final List<Page> pages, final int count) {
+        final List<Page> oldPages = new ArrayList<Page>(mPages);
+        final int oldCount = mCount;
+        final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldCount;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return count;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return idAt(oldPages, oldPosition) == idAt(pages, newPosition);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                final Page oldPage = oldPages.get(oldPosition / mPageSize);
+                final Page newPage = pages.get(newPosition / mPageSize);
+                return oldPage.articles != null && TextUtils.equals(
+                        oldPage.hashes[oldPosition - oldPage.start],
+                        newPage.hashes[newPosition - newPage.start]);
+            }
+        }, false);
+
+        mPages.clear();
+        mPages.addAll(pages);
+        mCount = count;
+        mEndReached = pages.get(pages.size() - 1).size < mPageSize;
+        diff.dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int itemCount) {
+                mListener.onItemRangeInserted(position, itemCount);
+            }
+
+            @Override
+            public void onRemoved(int position, int itemCount) {
+                mListener.onItemRangeRemoved(position, itemCount);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                mListener.onItemRangeMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int itemCount, Object payload) {
+                mListener.onItemRangeChanged(position, itemCount);
+            }
+        });
+    }
+
+    private long idAt(List<Page> pages, int position) {
+        final Page page = pages.get(position / mPageSize);
+        return page.ids[position - page.start];
+    }
+
+    private void dropDistantPages(int currentPageIndex) {
+        for (int i = 0; i < mPages.size(); i++) {
+            final Page page = mPages.get(i);
+            if (page.articles != null && Math.abs(i - currentPageIndex) > mRetainedPages) {
+                page.articles = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.xyzreader.data;
+
+import android.util.Log;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Converts the feed's published date strings into the epoch millis stored in
+ * {@link ItemsContract.Items#PUBLISHED_DATE}.
+ */
+final class PublishedDates {
+    private static final String TAG = "PublishedDates";
+
+    // SimpleDateFormat is not thread safe, so each thread gets its own
+    private static final ThreadLocal<SimpleDateFormat> sFeedFormat =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
+                }
+            };
+
+    private PublishedDates() {
+    }
+
+    /**
+     * @return the date in epoch millis, or the current time if it cannot be parsed
+     */
+    static long parse(String date) {
+        if (date == null) {
+            Log.e(TAG, "Missing published date, passing today's date");
+            return System.currentTimeMillis();
+        }
+        try {
+            return sFeedFormat.get().parse(date).getTime();
+        } catch (ParseException ex) {
+            Log.e(TAG, "Unparseable published date: " + date);
+            Log.i(TAG, "passing today's date");
+            return System.currentTimeMillis();
+        }
+    }
+}
@@ -18,6 +18,8 @@
  * Modifications:
  * -Imported from AOSP frameworks/base/core/java/com/android/internal/content
  * -Changed package name
+ * -Cache the SQL text of queries, keyed by the builder state
+ * -Reuse the selection arguments array between queries
  */
 
 package com.example.xyzreader.data;
@@ -29,7 +31,9 @@ import java.util.HashMap;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.text.TextUtils;
+import android.util.LruCache;
 
 /**
  * Helper for building selection clauses for {@link SQLiteDatabase}. Each
@@ -37,10 +41,24 @@ import android.text.TextUtils;
  * thread safe.
  */
 public class SelectionBuilder {
+    private static final int SQL_CACHE_SIZE = 32;
+
+    /**
+     * SQL text of recent queries. Identical text also hits SQLite's prepared statement cache,
+     * so a repeated query neither rebuilds its SQL nor recompiles it.
+     */
+    private static final LruCache<QueryKey, String> sSqlCache =
+            new LruCache<QueryKey, String>(SQL_CACHE_SIZE);
+
+    // Reused for cache lookups, only copied when a new entry is added
+    private final QueryKey mLookupKey = new QueryKey();
+
     private String mTable = null;
     private HashMap<String, String> mProjectionMap;
     private StringBuilder mSelection;
     private ArrayList<String> mSelectionArgs;
+    // Refilled in place while the number of arguments stays the same
+    private String[] mSelectionArgsArray;
 
     /**
      * Reset any internal state, allowing this builder to be recycled.
@@ -145,13 +163,18 @@ public class SelectionBuilder {
     }
 
     /**
-     * Return selection arguments for current internal state.
+     * Return selection arguments for current internal state. The array is reused by later
+     * calls, SQLite copies the arguments when they are bound.
      *
      * @see #getSelection()
      */
     public String[] getSelectionArgs() {
     	if (mSelectionArgs != null) {
-            return mSelectionArgs.toArray(new String[mSelectionArgs.size()]);
+    		final int size = mSelectionArgs.size();
+    		if (mSelectionArgsArray == null || mSelectionArgsArray.length != size) {
+    			mSelectionArgsArray = new String[size];
+    		}
+            return mSelectionArgs.toArray(mSelectionArgsArray);
     	} else {
     		return null;
     	}
@@ -185,10 +208,26 @@ public class SelectionBuilder {
      */
     public Cursor query(SQLiteDatabase db, String[] columns, String groupBy,
             String having, String orderBy, String limit) {
+        return db.rawQuery(buildQuery(columns, groupBy, having, orderBy, limit),
+                getSelectionArgs());
+    }
+
+    /**
+     * Return the SQL text of a query using the current internal state, from the cache if the
+     * same query was built before. Maps {@code columns} in place.
+     */
+    String buildQuery(String[] columns, String groupBy, String having, String orderBy,
+            String limit) {
         assertTable();
         if (columns != null) mapColumns(columns);
-        return db.query(mTable, columns, getSelection(), getSelectionArgs(), groupBy, having,
-                orderBy, limit);
+        mLookupKey.set(mTable, mSelection, columns, groupBy, having, orderBy, limit);
+        String sql = sSqlCache.get(mLookupKey);
+        if (sql == null) {
+            sql = SQLiteQueryBuilder.buildQueryString(false, mTable, columns, getSelection(),
+                    groupBy, having, orderBy, limit);
+            sSqlCache.put(mLookupKey.copy(), sql);
+        }
+        return sql;
     }
 
     /**
@@ -206,4 +245,80 @@ public class SelectionBuilder {
         assertTable();
         return db.delete(mTable, getSelection(), getSelectionArgs());
     }
+
+    /**
+     * Everything that goes into the SQL text of a query. The selection is compared by content,
+     * so a lookup can use the builder's {@link StringBuilder} without turning it into a string.
+     */
+    private static final class QueryKey {
+        String table;
+        CharSequence selection;
+        String[] columns;
+        String groupBy;
+        String having;
+        String orderBy;
+        String limit;
+        private int mHash;
+
+        void set(String table, CharSequence selection, String[] columns, String groupBy,
+                String having, String orderBy, String limit) {
+            this.table = table;
+            this.selection = selection != null && selection.length() > 0 ? selection : null;
+            this.columns = columns;
+            this.groupBy = groupBy;
+            this.having = having;
+            this.orderBy = orderBy;
+            this.limit = limit;
+
+            int hash = TextUtils.isEmpty(table) ? 0 : table.hashCode();
+            if (this.selection != null) {
+                for (int i = 0; i < this.selection.length(); i++) {
+                    hash = 31 * hash + this.selection.charAt(i);
+                }
+            }
+            hash = 31 * hash + Arrays.hashCode(columns);
+            hash = 31 * hash + (groupBy != null ? groupBy.hashCode() : 0);
+            hash = 31 * hash + (having != null ? having.hashCode() : 0);
+            hash = 31 * hash + (orderBy != null ? orderBy.hashCode() : 0);
+            hash = 31 * hash + (limit != null ? limit.hashCode() : 0);
+            mHash = hash;
+        }
+
+        QueryKey copy() {
+            final QueryKey copy = new QueryKey();
+            copy.table = table;
+            copy.selection = selection != null ? selection.toString() : null;
+            copy.columns = columns != null ? columns.clone() : null;
+            copy.groupBy = groupBy;
+            copy.having = having;
+            copy.orderBy = orderBy;
+            copy.limit = limit;
+            copy.mHash = mHash;
+            return copy;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            final QueryKey other = (QueryKey) o;
+            return mHash == other.mHash
+                    && TextUtils.equals(table, other.table)
+                    && TextUtils.equals(selection, other.selection)
+                    && Arrays.equals(columns, other.columns)
+                    && TextUtils.equals(groupBy, other.groupBy)
+                    && TextUtils.equals(having, other.having)
+                    && TextUtils.equals(orderBy, other.orderBy)
+                    && TextUtils.equals(limit, other.limit);
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package com.example.xyzreader.data;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receives the periodic sync alarm set before API 21 and asks for a sync the same way the app
+ * does, so an alarm that fires while a sync is pending is coalesced with it.
+ */
+public class SyncAlarmReceiver extends BroadcastReceiver {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        UpdaterService.requestSync(context);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.xyzreader.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+
+/**
+ * Runs the periodic sync scheduled by {@link SyncScheduler}. Failed runs are handed back to
+ * the scheduler so they are retried with its backoff policy.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class SyncJobService extends JobService {
+    private Thread mSyncThread;
+    // Set once onStopJob has answered for the job, which must then not be finished again
+    private volatile boolean mStopped;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mStopped = false;
+        // onStartJob is called on the main thread, the sync itself does network and disk I/O
+        mSyncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = new ArticleSyncer(SyncJobService.this).sync();
+                // The scheduler already reschedules a stopped job as onStopJob asked
+                if (!mStopped) {
+                    jobFinished(params, !success);
+                }
+            }
+        }, "SyncJobService");
+        mSyncThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Constraints no longer hold, let the running sync wind down and try again later
+        mStopped = true;
+        if (mSyncThread != null) {
+            mSyncThread.interrupt();
+            mSyncThread = null;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.xyzreader.data;
+
+import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.util.Log;
+
+import com.example.xyzreader.remote.Config;
+
+/**
+ * Keeps the articles fresh in the background so launching the app never has to wait on the
+ * network. On API 21+ the sync runs as a {@link JobScheduler} job that only fires on an
+ * unmetered network while charging, older devices fall back to an inexact alarm that requests
+ * the sync through {@link SyncAlarmReceiver}. Thumbnail
+ * colors are filled in after a sync by a job of their own, also only on unmetered networks.
+ */
+public final class SyncScheduler {
+    private static final String TAG = "SyncScheduler";
+
+    private static final int SYNC_JOB_ID = 1;
+    private static final int THUMBNAIL_COLORS_JOB_ID = 2;
+    private static final long SYNC_BACKOFF_MILLIS = 30 * 1000;
+
+    private SyncScheduler() {
+    }
+
+    /**
+     * Schedules the periodic sync. Safe to call repeatedly, an existing schedule is kept.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJob(context);
+        } else {
+            scheduleAlarm(context);
+        }
+    }
+
+    /**
+     * Starts a sync only if the stored articles are older than {@link Config#SYNC_TTL_MILLIS}.
+     * Whatever is in the database can be shown right away either way.
+     *
+     * @return {@code true} if a new sync was queued
+     */
+    public static boolean syncIfStale(Context context) {
+        long age = System.currentTimeMillis() - SyncStatus.getLastSuccessTime(context);
+        if (age >= 0 && age < Config.SYNC_TTL_MILLIS) {
+            Log.d(TAG, "Articles are " + age + "ms old, not syncing.");
+            return false;
+        }
+        return UpdaterService.requestSync(context);
+    }
+
+    /**
+     * Fills in the thumbnail colors of articles that don't have them yet, in runs of
+     * {@link ThumbnailSwatches#MAX_PER_RUN}, once the device is on an unmetered network. Before
+     * API 21 a single run starts right away on a background thread if the network is unmetered.
+     */
+    public static void scheduleThumbnailColors(final Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleThumbnailColorsJob(context);
+            return;
+        }
+        ConnectivityManager cm =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null || ConnectivityManagerCompat.isActiveNetworkMetered(cm)) {
+            Log.d(TAG, "Metered network, not fetching thumbnail colors.");
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ThumbnailSwatches.fillMissing(appContext, ThumbnailSwatches.MAX_PER_RUN);
+            }
+        }, "ThumbnailSwatches").start();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    static void scheduleThumbnailColorsJob(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        // Replaces a pending run, there is only ever one set of missing colors
+        JobInfo job = new JobInfo.Builder(THUMBNAIL_COLORS_JOB_ID,
+                new ComponentName(context, ThumbnailColorsJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setBackoffCriteria(SYNC_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(false)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule thumbnail colors.");
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+
+        JobInfo job = new JobInfo.Builder(SYNC_JOB_ID,
+                new ComponentName(context, SyncJobService.class))
+                .setPeriodic(Config.SYNC_INTERVAL_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setBackoffCriteria(SYNC_BACKOFF_MILLIS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(false)
+                .build();
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Could not schedule periodic sync.");
+        }
+    }
+
+    private static void scheduleAlarm(Context context) {
+        Intent intent = new Intent(context, SyncAlarmReceiver.class);
+        if (PendingIntent.getBroadcast(context, SYNC_JOB_ID, intent,
+                PendingIntent.FLAG_NO_CREATE) != null) {
+            return;
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        // Earlier versions started the service straight from the alarm, past the coalescing
+        PendingIntent legacy = PendingIntent.getService(context, SYNC_JOB_ID,
+                new Intent(context, UpdaterService.class), PendingIntent.FLAG_NO_CREATE);
+        if (legacy != null) {
+            alarmManager.cancel(legacy);
+            legacy.cancel();
+        }
+        PendingIntent operation = PendingIntent.getBroadcast(context, SYNC_JOB_ID, intent, 0);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                SystemClock.elapsedRealtime() + Config.SYNC_INTERVAL_MILLIS,
+                Config.SYNC_INTERVAL_MILLIS, operation);
+    }
+}
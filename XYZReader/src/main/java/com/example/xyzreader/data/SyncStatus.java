@@ -0,0 +1,73 @@
+package com.example.xyzreader.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Records when the last sync ran and how it ended, so callers can tell whether their request
+ * was served by a sync that was already under way.
+ */
+public final class SyncStatus {
+    /** The feed was fetched and the stored articles were updated. */
+    public static final int OUTCOME_SUCCESS = 0;
+    /** The feed had not changed since the last sync. */
+    public static final int OUTCOME_NOT_MODIFIED = 1;
+    /** The sync failed and will be retried on the next request. */
+    public static final int OUTCOME_FAILED = 2;
+
+    private static final String PREFS_NAME = "sync_status";
+    private static final String KEY_LAST_SUCCESS = "last_success";
+    private static final String KEY_LAST_START = "last_start";
+    private static final String KEY_LAST_END = "last_end";
+    private static final String KEY_LAST_OUTCOME = "last_outcome";
+
+    private SyncStatus() {
+    }
+
+    /**
+     * @return epoch millis of the last successful sync, or 0 if there has not been one
+     */
+    public static long getLastSuccessTime(Context context) {
+        return getPreferences(context).getLong(KEY_LAST_SUCCESS, 0);
+    }
+
+    /**
+     * @return epoch millis at which the last sync started, or 0 if none has run
+     */
+    public static long getLastStartTime(Context context) {
+        return getPreferences(context).getLong(KEY_LAST_START, 0);
+    }
+
+    /**
+     * @return epoch millis at which the last sync finished, or 0 if none has finished
+     */
+    public static long getLastEndTime(Context context) {
+        return getPreferences(context).getLong(KEY_LAST_END, 0);
+    }
+
+    /**
+     * @return one of the {@code OUTCOME_} constants, or -1 if no sync has finished yet
+     */
+    public static int getLastOutcome(Context context) {
+        return getPreferences(context).getInt(KEY_LAST_OUTCOME, -1);
+    }
+
+    static void recordStart(Context context, long timeMillis) {
+        getPreferences(context).edit().putLong(KEY_LAST_START, timeMillis).apply();
+    }
+
+    static void recordEnd(Context context, long timeMillis, int outcome) {
+        SharedPreferences.Editor editor = getPreferences(context).edit()
+                .putLong(KEY_LAST_END, timeMillis)
+                .putInt(KEY_LAST_OUTCOME, outcome);
+        if (outcome == OUTCOME_SUCCESS || outcome == OUTCOME_NOT_MODIFIED) {
+            editor.putLong(KEY_LAST_SUCCESS, timeMillis);
+        }
+        editor.apply();
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.xyzreader.data;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.os.Build;
+
+/**
+ * Fills in thumbnail colors after a sync, scheduled by
+ * {@link SyncScheduler#scheduleThumbnailColors}. Each run handles a bounded number of
+ * thumbnails and schedules the next one while colors are still missing.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ThumbnailColorsJobService extends JobService {
+    private Thread mThread;
+    // Set once onStopJob has answered for the job, which must then not be finished again
+    private volatile boolean mStopped;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mStopped = false;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean more = ThumbnailSwatches.fillMissing(ThumbnailColorsJobService.this,
+                        ThumbnailSwatches.MAX_PER_RUN);
+                if (mStopped) {
+                    return;
+                }
+                jobFinished(params, false);
+                if (more) {
+                    SyncScheduler.scheduleThumbnailColorsJob(ThumbnailColorsJobService.this);
+                }
+            }
+        }, "ThumbnailColorsJobService");
+        mThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Off the unmetered network, nothing of an interrupted run is written
+        mStopped = true;
+        if (mThread != null) {
+            mThread.interrupt();
+            mThread = null;
+        }
+        return true;
+    }
+}
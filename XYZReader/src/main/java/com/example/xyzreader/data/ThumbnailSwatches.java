@@ -0,0 +1,137 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.os.RemoteException;
+import android.support.v7.graphics.Palette;
+import android.util.Log;
+
+import com.squareup.picasso.Picasso;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Takes the card colors from article thumbnails after a sync has published its articles, so
+ * the list and detail screens can paint them on the first frame. Fetching a thumbnail goes
+ * through Picasso, which leaves it in the HTTP cache for when the card is shown. Run by
+ * {@link SyncScheduler#scheduleThumbnailColors}, not by the sync itself.
+ */
+class ThumbnailSwatches {
+    private static final String TAG = "ThumbnailSwatches";
+
+    // Thumbnails are decoded no larger than this, plenty for picking colors
+    private static final int DECODE_SIZE = 160;
+    // Palette scales the bitmap down to about this many pixels before quantizing it
+    private static final int RESIZE_BITMAP_AREA = 112 * 112;
+    // Thumbnails fetched and analysed at the same time
+    private static final int THREADS = 3;
+    /** Thumbnails handled per run, newest articles first. */
+    static final int MAX_PER_RUN = 60;
+
+    private static final String[] PROJECTION = {
+            ItemsContract.Items._ID,
+            ItemsContract.Items.THUMB_URL,
+    };
+
+    private ThumbnailSwatches() {
+    }
+
+    /**
+     * Computes {@link ItemsContract.Items#MUTED_COLOR} and
+     * {@link ItemsContract.Items#DARK_MUTED_COLOR} of up to {@code limit} of the newest
+     * published articles that don't have them yet and writes them in one batch. A thumbnail
+     * that can't be loaded gets 0 for both, so it isn't tried again on every run; the UI then
+     * takes its colors from the image it loads itself. Blocks; if interrupted, nothing is
+     * written.
+     *
+     * @return whether articles without colors may be left, {@code false} once all are done
+     */
+    static boolean fillMissing(Context context, int limit) {
+        final ContentResolver resolver = context.getContentResolver();
+        final List<Callable<ContentProviderOperation>> tasks =
+                new ArrayList<Callable<ContentProviderOperation>>();
+        final Cursor cursor = resolver.query(ItemsContract.Items.buildPageUri(0, -1, limit),
+                PROJECTION, ItemsContract.Items.MUTED_COLOR + " IS NULL", null, null);
+        if (cursor == null) {
+            return false;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                final long id = cursor.getLong(0);
+                final String thumbUrl = cursor.getString(1);
+                tasks.add(new Callable<ContentProviderOperation>() {
+                    @Override
+                    public ContentProviderOperation call() {
+                        return buildUpdate(id, thumbUrl);
+                    }
+                });
+            }
+        } finally {
+            cursor.close();
+        }
+        if (tasks.isEmpty()) {
+            return false;
+        }
+
+        final ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(tasks.size());
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(THREADS, tasks.size()));
+        try {
+            for (Future<ContentProviderOperation> result : executor.invokeAll(tasks)) {
+                operations.add(result.get());
+            }
+            // One batch, so observers are notified once for all of them
+            resolver.applyBatch(ItemsContract.CONTENT_AUTHORITY, operations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | RemoteException | OperationApplicationException e) {
+            // Left for the run after the next sync rather than retried right away
+            Log.e(TAG, "Could not store thumbnail colors", e);
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+        return tasks.size() >= limit;
+    }
+
+    private static ContentProviderOperation buildUpdate(long id, String thumbUrl) {
+        int muted = 0;
+        int darkMuted = 0;
+        try {
+            final Bitmap bitmap = Picasso.get()
+                    .load(thumbUrl)
+                    .resize(DECODE_SIZE, DECODE_SIZE)
+                    .centerInside()
+                    .onlyScaleDown()
+                    .get();
+            if (bitmap != null) {
+                final Palette palette = Palette.from(bitmap)
+                        .resizeBitmapArea(RESIZE_BITMAP_AREA)
+                        .generate();
+                muted = palette.getMutedColor(0);
+                darkMuted = palette.getDarkMutedColor(0);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Also covers empty or malformed URLs, which Picasso rejects with an exception
+            Log.w(TAG, "Could not take colors from thumbnail " + thumbUrl, e);
+        }
+        return ContentProviderOperation.newUpdate(ItemsContract.Items.buildDirUri())
+                .withSelection(ItemsContract.Items._ID + "=?", new String[]{Long.toString(id)})
+                .withValue(ItemsContract.Items.MUTED_COLOR, muted)
+                .withValue(ItemsContract.Items.DARK_MUTED_COLOR, darkMuted)
+                .build();
+    }
+}
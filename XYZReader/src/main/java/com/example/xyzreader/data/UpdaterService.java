@@ -1,24 +1,13 @@
 package com.example.xyzreader.data;
 
 import android.app.IntentService;
-import android.content.ContentProviderOperation;
-import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
-import android.content.OperationApplicationException;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
-import android.os.RemoteException;
-import android.text.format.Time;
 import android.util.Log;
 
-import com.example.xyzreader.remote.RemoteEndpointUtil;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class UpdaterService extends IntentService {
     private static final String TAG = "UpdaterService";
@@ -28,14 +17,48 @@ public class UpdaterService extends IntentService {
     public static final String EXTRA_REFRESHING
             = "com.example.xyzreader.intent.extra.REFRESHING";
 
+    // Set while a sync intent is queued or running, so repeated requests don't pile up behind it
+    private static final AtomicBoolean sSyncRequested = new AtomicBoolean();
+
     public UpdaterService() {
         super(TAG);
     }
 
+    /**
+     * Asks for a sync. If one is already queued or running this request attaches to it and no
+     * new work is queued.
+     *
+     * @return {@code true} if a new sync was queued, {@code false} if the request was coalesced
+     * with one that is already pending or the service could not be started
+     */
+    public static boolean requestSync(Context context) {
+        if (!sSyncRequested.compareAndSet(false, true)) {
+            Log.d(TAG, "Sync already pending, coalescing request.");
+            return false;
+        }
+        try {
+            context.startService(new Intent(context, UpdaterService.class));
+        } catch (IllegalStateException e) {
+            // API 26+ refuses to start services while the app is in the background. Nothing
+            // was queued, so the flag must not keep later requests out.
+            sSyncRequested.set(false);
+            Log.w(TAG, "Could not start sync.", e);
+            return false;
+        }
+        return true;
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
-        Time time = new Time();
+        // Don't even inspect the intent, we only do one thing, and that's fetch content.
+        try {
+            handleSync();
+        } finally {
+            sSyncRequested.set(false);
+        }
+    }
 
+    private void handleSync() {
         ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
         NetworkInfo ni = cm.getActiveNetworkInfo();
         if (ni == null || !ni.isConnected()) {
@@ -46,39 +69,7 @@ public class UpdaterService extends IntentService {
         sendStickyBroadcast(
                 new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, true));
 
-        // Don't even inspect the intent, we only do one thing, and that's fetch content.
-        ArrayList<ContentProviderOperation> cpo = new ArrayList<ContentProviderOperation>();
-
-        Uri dirUri = ItemsContract.Items.buildDirUri();
-
-        // Delete all items
-        cpo.add(ContentProviderOperation.newDelete(dirUri).build());
-
-        try {
-            JSONArray array = RemoteEndpointUtil.fetchJsonArray();
-            if (array == null) {
-                throw new JSONException("Invalid parsed item array" );
-            }
-
-            for (int i = 0; i < array.length(); i++) {
-                ContentValues values = new ContentValues();
-                JSONObject object = array.getJSONObject(i);
-                values.put(ItemsContract.Items.SERVER_ID, object.getString("id" ));
-                values.put(ItemsContract.Items.AUTHOR, object.getString("author" ));
-                values.put(ItemsContract.Items.TITLE, object.getString("title" ));
-                values.put(ItemsContract.Items.BODY, object.getString("body" ));
-                values.put(ItemsContract.Items.THUMB_URL, object.getString("thumb" ));
-                values.put(ItemsContract.Items.PHOTO_URL, object.getString("photo" ));
-                values.put(ItemsContract.Items.ASPECT_RATIO, object.getString("aspect_ratio" ));
-                values.put(ItemsContract.Items.PUBLISHED_DATE, object.getString("published_date"));
-                cpo.add(ContentProviderOperation.newInsert(dirUri).withValues(values).build());
-            }
-
-            getContentResolver().applyBatch(ItemsContract.CONTENT_AUTHORITY, cpo);
-
-        } catch (JSONException | RemoteException | OperationApplicationException e) {
-            Log.e(TAG, "Error updating content.", e);
-        }
+        new ArticleSyncer(this).sync();
 
         sendStickyBroadcast(
                 new Intent(BROADCAST_ACTION_STATE_CHANGE).putExtra(EXTRA_REFRESHING, false));
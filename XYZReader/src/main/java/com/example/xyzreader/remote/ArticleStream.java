@@ -0,0 +1,87 @@
+package com.example.xyzreader.remote;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import okhttp3.Response;
+
+/**
+ * Pull-style reader over the article feed. The response body is parsed as it arrives, so only
+ * the article currently being read is held in memory regardless of the size of the feed.
+ */
+public class ArticleStream implements Closeable {
+    private final Response mResponse;
+    private final JsonReader mReader;
+    private boolean mFinished;
+
+    ArticleStream(Response response) throws IOException {
+        mResponse = response;
+        mReader = new JsonReader(response.body().charStream());
+        try {
+            mReader.beginArray();
+        } catch (IOException | IllegalStateException e) {
+            close();
+            throw new IOException("Expected a JSON array of articles", e);
+        }
+    }
+
+    /** The {@code ETag} validator of the response, if the server sent one. */
+    public String getETag() {
+        return mResponse.header("ETag");
+    }
+
+    /** The {@code Last-Modified} validator of the response, if the server sent one. */
+    public String getLastModified() {
+        return mResponse.header("Last-Modified");
+    }
+
+    /**
+     * Reads the next article from the feed.
+     *
+     * @return the next article, or {@code null} once the end of the feed has been reached
+     */
+    public RemoteArticle next() throws IOException {
+        if (mFinished) {
+            return null;
+        }
+
+        try {
+            if (!mReader.hasNext()) {
+                mReader.endArray();
+                mFinished = true;
+                return null;
+            }
+
+            RemoteArticle article = new RemoteArticle();
+            mReader.beginObject();
+            while (mReader.hasNext()) {
+                String name = mReader.nextName();
+                if (mReader.peek() == JsonToken.NULL) {
+                    mReader.nextNull();
+                } else if (mReader.peek() == JsonToken.STRING
+                        || mReader.peek() == JsonToken.NUMBER) {
+                    article.set(name, mReader.nextString());
+                } else {
+                    mReader.skipValue();
+                }
+            }
+            mReader.endObject();
+            return article;
+        } catch (IllegalStateException e) {
+            // JsonReader reports structural problems as unchecked exceptions
+            throw new IOException("Malformed article feed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            mReader.close();
+        } catch (IOException ignored) {
+        }
+        mResponse.close();
+    }
+}
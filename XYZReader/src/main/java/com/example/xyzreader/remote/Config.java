@@ -7,6 +7,15 @@ import java.net.URL;
 
 public class Config {
     public static final URL BASE_URL;
+
+    // How often the background sync runs when its constraints are met
+    public static final long SYNC_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L;
+    // Articles younger than this are shown as-is on launch without syncing first
+    public static final long SYNC_TTL_MILLIS = 60 * 60 * 1000L;
+    // Whether thumbnails are downloaded after a sync, on an unmetered network, to store their
+    // card colors with the articles
+    public static final boolean SYNC_THUMBNAIL_COLORS = true;
+
     private static String TAG = Config.class.toString();
 
     static {
@@ -0,0 +1,47 @@
+package com.example.xyzreader.remote;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+/**
+ * Holds the one {@link OkHttpClient} used by the whole process, for the feed as well as for
+ * images, so that connections, threads and cached responses are shared.
+ */
+public class HttpClientHolder {
+    private static final String CACHE_DIR_NAME = "http";
+    private static final long CACHE_SIZE_BYTES = 50L * 1024 * 1024;
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 15;
+    private static final long READ_TIMEOUT_SECONDS = 30;
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+
+    private static OkHttpClient sClient;
+
+    private HttpClientHolder() {
+    }
+
+    public static synchronized OkHttpClient getClient(Context context) {
+        if (sClient == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(),
+                    CACHE_DIR_NAME);
+            sClient = new OkHttpClient.Builder()
+                    .cache(new Cache(cacheDir, CACHE_SIZE_BYTES))
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS,
+                            KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .build();
+        }
+        return sClient;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.xyzreader.remote;
+
+/**
+ * A single article as read from the remote feed, before it is converted for storage.
+ */
+public class RemoteArticle {
+    private String mId;
+    private String mAuthor;
+    private String mTitle;
+    private String mBody;
+    private String mThumbUrl;
+    private String mPhotoUrl;
+    private String mAspectRatio;
+    private String mPublishedDate;
+
+    RemoteArticle() {
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public String getAuthor() {
+        return mAuthor;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public String getBody() {
+        return mBody;
+    }
+
+    public String getThumbUrl() {
+        return mThumbUrl;
+    }
+
+    public String getPhotoUrl() {
+        return mPhotoUrl;
+    }
+
+    public String getAspectRatio() {
+        return mAspectRatio;
+    }
+
+    public String getPublishedDate() {
+        return mPublishedDate;
+    }
+
+    void set(String name, String value) {
+        switch (name) {
+            case "id":
+                mId = value;
+                break;
+            case "author":
+                mAuthor = value;
+                break;
+            case "title":
+                mTitle = value;
+                break;
+            case "body":
+                mBody = value;
+                break;
+            case "thumb":
+                mThumbUrl = value;
+                break;
+            case "photo":
+                mPhotoUrl = value;
+                break;
+            case "aspect_ratio":
+                mAspectRatio = value;
+                break;
+            case "published_date":
+                mPublishedDate = value;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Whether every field the database requires was present in the feed.
+     */
+    public boolean isComplete() {
+        return mId != null && mAuthor != null && mTitle != null && mBody != null
+                && mThumbUrl != null && mPhotoUrl != null && mAspectRatio != null
+                && mPublishedDate != null;
+    }
+}
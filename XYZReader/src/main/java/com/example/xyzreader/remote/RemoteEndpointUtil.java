@@ -1,12 +1,11 @@
 package com.example.xyzreader.remote;
 
-import android.util.Log;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONTokener;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
 
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
 import okhttp3.OkHttpClient;
@@ -14,43 +13,94 @@ import okhttp3.Request;
 import okhttp3.Response;
 
 public class RemoteEndpointUtil {
-    private static final String TAG = "RemoteEndpointUtil";
+    private static final String PREFS_NAME = "remote_endpoint";
+    private static final String PREF_ETAG = "etag";
+    private static final String PREF_LAST_MODIFIED = "last_modified";
 
     private RemoteEndpointUtil() {
     }
 
-    public static JSONArray fetchJsonArray() {
-        String itemsJson = null;
-        try {
-            itemsJson = fetchPlainText(Config.BASE_URL);
-        } catch (IOException e) {
-            Log.e(TAG, "Error fetching items JSON", e);
-            return null;
+    /**
+     * Opens the article feed for streaming. The caller owns the returned stream and must close
+     * it once done reading.
+     *
+     * <p>The request is made conditional on the validators saved by
+     * {@link #saveValidators(Context, ArticleStream)}, so an unchanged feed is not downloaded
+     * again.
+     *
+     * @return the feed, or {@code null} if the server reported it as not modified
+     */
+    public static ArticleStream openArticleStream(Context context) throws IOException {
+        return openArticleStream(context, HttpClientHolder.getClient(context), Config.BASE_URL);
+    }
+
+    /**
+     * Like {@link #openArticleStream(Context)}, fetching the feed from {@code url} with
+     * {@code client}.
+     */
+    public static ArticleStream openArticleStream(Context context, OkHttpClient client, URL url)
+            throws IOException {
+        SharedPreferences prefs = getPreferences(context);
+        Request.Builder builder = new Request.Builder()
+                .url(url);
+
+        String eTag = prefs.getString(PREF_ETAG, null);
+        if (!TextUtils.isEmpty(eTag)) {
+            builder.header("If-None-Match", eTag);
+        }
+        String lastModified = prefs.getString(PREF_LAST_MODIFIED, null);
+        if (!TextUtils.isEmpty(lastModified)) {
+            builder.header("If-Modified-Since", lastModified);
         }
 
-        // Parse JSON
-        try {
-            JSONTokener tokener = new JSONTokener(itemsJson);
-            Object val = tokener.nextValue();
-            if (!(val instanceof JSONArray)) {
-                throw new JSONException("Expected JSONArray");
-            }
-            return (JSONArray) val;
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing items JSON", e);
+        Response response = fetch(client, builder.build());
+        if (response == null) {
+            return null;
         }
+        return new ArticleStream(response);
+    }
 
-        return null;
+    /**
+     * Remembers the validators of a feed that has been fully stored, to be sent along with the
+     * next request. Only call this once the feed contents are safely in the database, otherwise
+     * a failed sync would never be retried against a full response.
+     */
+    public static void saveValidators(Context context, ArticleStream stream) {
+        getPreferences(context).edit()
+                .putString(PREF_ETAG, stream.getETag())
+                .putString(PREF_LAST_MODIFIED, stream.getLastModified())
+                .apply();
     }
 
-    static String fetchPlainText(URL url) throws IOException {
-        OkHttpClient client = new OkHttpClient();
+    /**
+     * Forgets any saved validators so that the next fetch downloads the full feed.
+     */
+    public static void clearValidators(Context context) {
+        getPreferences(context).edit()
+                .remove(PREF_ETAG)
+                .remove(PREF_LAST_MODIFIED)
+                .apply();
+    }
 
-        Request request = new Request.Builder()
-                .url(url)
-                .build();
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
 
+    /**
+     * @return the response, or {@code null} for a 304 Not Modified
+     */
+    static Response fetch(OkHttpClient client, Request request) throws IOException {
         Response response = client.newCall(request).execute();
-        return response.body().string();
+        if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response.close();
+            return null;
+        }
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("Unexpected response " + response.code()
+                    + " for " + request.url());
+        }
+        return response;
     }
 }
@@ -1,7 +1,6 @@
 package com.example.xyzreader.ui;
 
 // COMPLETED: Add the support library for all Fragment and Loader's classes for backward compatibility
-import android.database.Cursor;
 import android.graphics.drawable.ColorDrawable;
 import android.os.Build;
 import android.os.Bundle;
@@ -22,7 +21,8 @@ import android.view.ViewGroup;
 import android.support.v7.widget.Toolbar;
 
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ArticleIdIndex;
+import com.example.xyzreader.data.ArticleIdIndexLoader;
 import com.example.xyzreader.data.ItemsContract;
 
 import java.util.List;
@@ -32,12 +32,13 @@ import java.util.Map;
  * An activity representing a single Article detail screen, letting you swipe between articles.
  */
 public class ArticleDetailActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<ArticleIdIndex> {
 
     private static final String TAG = ArticleDetailActivity.class.getSimpleName();
 
-    private Cursor mCursor;
+    private ArticleIdIndex mIndex = ArticleIdIndex.EMPTY;
     private long mStartId;
+    private String mStartTransitionName;
 
     private long mSelectedItemId;
     private int mSelectedItemUpButtonFloor = Integer.MAX_VALUE;
@@ -82,6 +83,9 @@ public class ArticleDetailActivity extends AppCompatActivity
             if (getIntent() != null && getIntent().getData() != null) {
                 mStartId = ItemsContract.Items.getItemId(getIntent().getData());
                 mSelectedItemId = mStartId;
+                // The list names the shared element after the article's title
+                mStartTransitionName =
+                        getIntent().getStringExtra(ArticleDetailFragment.TRANSITION_NAME);
             }
 
             // COMPLETED: Avoid a postponeEnterTransition on orientation change
@@ -114,10 +118,9 @@ public class ArticleDetailActivity extends AppCompatActivity
                 // COMPLETED: Set the selectedIndex to the current position that is saved from the first Activity
                 ArticleListActivity.currentPosition = position;
 
-                if (mCursor != null) {
-                    mCursor.moveToPosition(position);
+                if (position < mIndex.size()) {
+                    mSelectedItemId = mIndex.getId(position);
                 }
-                mSelectedItemId = mCursor.getLong(ArticleLoader.Query._ID);
             }
 
             @Override
@@ -129,34 +132,28 @@ public class ArticleDetailActivity extends AppCompatActivity
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newAllArticlesInstance(this);
+    public Loader<ArticleIdIndex> onCreateLoader(int i, Bundle bundle) {
+        return new ArticleIdIndexLoader(this);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        mCursor = cursor;
+    public void onLoadFinished(Loader<ArticleIdIndex> loader, ArticleIdIndex index) {
+        mIndex = index;
         mPagerAdapter.notifyDataSetChanged();
 
         // Select the start ID
         if (mStartId > 0) {
-            mCursor.moveToFirst();
-            // TODO: optimize
-            while (!mCursor.isAfterLast()) {
-                if (mCursor.getLong(ArticleLoader.Query._ID) == mStartId) {
-                    final int position = mCursor.getPosition();
-                    mPager.setCurrentItem(position, false);
-                    break;
-                }
-                mCursor.moveToNext();
+            final int position = mIndex.indexOf(mStartId);
+            if (position >= 0) {
+                mPager.setCurrentItem(position, false);
             }
             mStartId = 0;
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
-        mCursor = null;
+    public void onLoaderReset(Loader<ArticleIdIndex> loader) {
+        mIndex = ArticleIdIndex.EMPTY;
         mPagerAdapter.notifyDataSetChanged();
     }
 
@@ -180,20 +177,18 @@ public class ArticleDetailActivity extends AppCompatActivity
 
         @Override
         public Fragment getItem(int position) {
-            mCursor.moveToPosition(position);
-            long cursorId = mCursor.getLong(ArticleLoader.Query._ID);
-            String articleName = mCursor.getString(ArticleLoader.Query.TITLE);
+            long itemId = mIndex.getId(position);
 
-            if (mStartId == cursorId) {
-                return ArticleDetailFragment.newInstance(cursorId, articleName);
+            if (mStartId == itemId && mStartTransitionName != null) {
+                return ArticleDetailFragment.newInstance(itemId, mStartTransitionName);
             } else {
-                return ArticleDetailFragment.newInstance(cursorId, "");
+                return ArticleDetailFragment.newInstance(itemId, "");
             }
         }
 
         @Override
         public int getCount() {
-            return (mCursor != null) ? mCursor.getCount() : 0;
+            return mIndex.size();
         }
 
     }
@@ -2,7 +2,6 @@ package com.example.xyzreader.ui;
 
 // COMPLETED: Add the support library for all Fragment and Loader's classes for backward compatibility
 import android.content.Intent;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Typeface;
 import android.graphics.drawable.BitmapDrawable;
@@ -14,36 +13,37 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.ShareCompat;
 import android.support.v4.content.Loader;
-import android.support.v7.graphics.Palette;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.text.Html;
+import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.format.DateUtils;
-import android.text.method.LinkMovementMethod;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.ImageView;
-import android.widget.LinearLayout;
-import android.widget.TextView;
 
 import com.example.xyzreader.R;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.adapters.ArticleBodyAdapter;
+import com.example.xyzreader.data.Article;
+import com.example.xyzreader.data.ArticleItemLoader;
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.List;
 
 /**
  * A fragment representing a single Article detail screen. This fragment is
  * either contained in a {@link ArticleListActivity} in two-pane mode (on
  * tablets) or a {@link ArticleDetailActivity} on handsets.
  */
-public class ArticleDetailFragment extends Fragment implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+public class ArticleDetailFragment extends Fragment {
 
     private static final String TAG = "ArticleDetailFragment";
 
@@ -51,14 +51,21 @@ public class ArticleDetailFragment extends Fragment implements
     public static final String ARG_ITEM_ID = "item_id";
     private static final float PARALLAX_FACTOR = 1.25f;
 
-    private Cursor mCursor;
+    private static final int LOADER_ARTICLE = 0;
+
+    private Article mArticle;
+    // Rendered separately from the rest of the article, may still be null after mArticle is set
+    private List<Spanned> mParagraphs;
+    // Content hash mParagraphs belong to or are being rendered for
+    private String mBodyHash;
+    private boolean mBodyRequested;
+    private ArticleBodyAdapter mBodyAdapter;
     private long mItemId;
     private View mRootView;
     private int mMutedColor = 0xFF333333;
 
     private FloatingActionButton mFab;
     private View mPhotoContainerView;
-    private LinearLayout mMetaLayout;
     private ImageView mPhotoView;
     private String mTransitionName;
 
@@ -66,7 +73,20 @@ public class ArticleDetailFragment extends Fragment implements
     private boolean mIsCard = false;
     private int mStatusBarFullOpacityBottom;
 
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss");
+    // Held from onCreate on, callbacks may run after the fragment has left its activity
+    private PaletteService mPaletteService;
+    // Photo whose colors mPaletteCallback waits for, if any
+    private String mPalettePhotoUrl;
+    private final PaletteService.Callback mPaletteCallback = new PaletteService.Callback() {
+        @Override
+        public void onColorsGenerated(String url, PaletteService.Colors colors) {
+            // The fragment may have gone or moved on to another article meanwhile
+            if (mBodyAdapter != null && mArticle != null && url.equals(mArticle.getPhotoUrl())) {
+                mBodyAdapter.setMetaBarColor(colors.getDarkMutedColor(mMutedColor));
+            }
+        }
+    };
+
     // Use default locale format
     private SimpleDateFormat outputFormat = new SimpleDateFormat();
     // Most time functions can only handle 1902 - 2037
@@ -103,6 +123,8 @@ public class ArticleDetailFragment extends Fragment implements
             Log.d(TAG, "Received transition name: " + mTransitionName);
         }
 
+        mPaletteService = PaletteService.getInstance(getActivity());
+
         mIsCard = getResources().getBoolean(R.bool.detail_is_card);
         mStatusBarFullOpacityBottom = getResources().getDimensionPixelSize(
                 R.dimen.detail_card_top_margin);
@@ -118,7 +140,7 @@ public class ArticleDetailFragment extends Fragment implements
         // the fragment's onCreate may cause the same LoaderManager to be dealt to multiple
         // fragments because their mIndex is -1 (haven't been added to the activity yet). Thus,
         // we do this in onActivityCreated.
-        getLoaderManager().initLoader(0, null, this);
+        getLoaderManager().initLoader(LOADER_ARTICLE, null, mArticleCallbacks);
     }
 
     @Override
@@ -128,6 +150,11 @@ public class ArticleDetailFragment extends Fragment implements
 
         mPhotoView = mRootView.findViewById(R.id.photo);
 
+        RecyclerView bodyList = mRootView.findViewById(R.id.article_body_list);
+        bodyList.setLayoutManager(new LinearLayoutManager(getActivity()));
+        mBodyAdapter = new ArticleBodyAdapter();
+        bodyList.setAdapter(mBodyAdapter);
+
         // COMPLETED: Move the FAB button in the activity
         mFab = mRootView.findViewById(R.id.share_fab);
         mFab.setOnClickListener(new View.OnClickListener() {
@@ -145,93 +172,84 @@ public class ArticleDetailFragment extends Fragment implements
         return mRootView;
     }
 
-    private Date parsePublishedDate() {
-        try {
-            String date = mCursor.getString(ArticleLoader.Query.PUBLISHED_DATE);
-            return dateFormat.parse(date);
-        } catch (ParseException ex) {
-            Log.e(TAG, "Parse Exception: " + ex.getMessage());
-            Log.i(TAG, "passing today's date");
-            return new Date();
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // Neither Picasso nor the palette service should hold on to the old views
+        Picasso.get().cancelRequest(mPhotoView);
+        cancelPaletteCallback();
+    }
+
+    private void cancelPaletteCallback() {
+        if (mPalettePhotoUrl != null) {
+            mPaletteService.cancel(mPalettePhotoUrl, mPaletteCallback);
+            mPalettePhotoUrl = null;
         }
     }
 
+    private Date parsePublishedDate() {
+        return new Date(mArticle.getPublishedDate());
+    }
+
     private void bindViews() {
         if (mRootView == null) {
             return;
         }
 
         CollapsingToolbarLayout collapsingToolbarLayout = mRootView.findViewById(R.id.collapsing_layout_detail);
-        TextView titleView = mRootView.findViewById(R.id.article_title);
-        TextView bylineView = mRootView.findViewById(R.id.article_byline);
-        bylineView.setMovementMethod(new LinkMovementMethod());
-        TextView bodyView = mRootView.findViewById(R.id.article_body);
-        TextView readMoreView = mRootView.findViewById(R.id.read_more_tv);
 
-        if (mCursor != null) {
+        if (mArticle != null) {
             mRootView.setAlpha(0);
             mRootView.setVisibility(View.VISIBLE);
             mRootView.animate().alpha(1);
 
-            String bodyArticleText;
-
-            String title = mCursor.getString(ArticleLoader.Query.TITLE);
+            String title = mArticle.getTitle();
             //collapsingToolbarLayout.setTitle(title);
-            titleView.setText(title);
 
             Date publishedDate = parsePublishedDate();
+            CharSequence byline;
             if (!publishedDate.before(START_OF_EPOCH.getTime())) {
-                bylineView.setText(Html.fromHtml(
+                byline = Html.fromHtml(
                         DateUtils.getRelativeTimeSpanString(
                                 publishedDate.getTime(),
                                 System.currentTimeMillis(), DateUtils.HOUR_IN_MILLIS,
                                 DateUtils.FORMAT_ABBREV_ALL).toString()
                                 + " by <font color='#ffffff'>"
-                                + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                                + "</font>"));
+                                + mArticle.getAuthor()
+                                + "</font>");
 
             } else {
                 // If date is before 1902, just show the string
-                bylineView.setText(Html.fromHtml(
+                byline = Html.fromHtml(
                         outputFormat.format(publishedDate) + " by <font color='#ffffff'>"
-                        + mCursor.getString(ArticleLoader.Query.AUTHOR)
-                                + "</font>"));
+                        + mArticle.getAuthor()
+                                + "</font>");
 
             }
+            mBodyAdapter.setHeader(title, byline);
 
-            // COMPLETED: Shrink the long String to only 1000 characters
-            bodyArticleText = mCursor.getString(ArticleLoader.Query.BODY)
-                    .replaceAll("(\r\n|\n)", "<br />");
-
-            bodyView.setText(Html.fromHtml(bodyArticleText
-                            .substring(0, 1000)));
-
-            Log.d(TAG, "Body text: " + bodyView);
-
-            // COMPLETED: Add a Read More text so that the user can expand to read the full article
-            readMoreView.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (bodyView.length() < bodyArticleText.length()) {
-                        readMoreView.setText(R.string.read_less_text);
-                    } else {
-                        readMoreView.setText(R.string.read_more_text);
-                    }
-
-                    bodyView.setText(Html.fromHtml(bodyArticleText
-                            .replaceAll("(\r\n|\n)", "<br />")));
-                }
-            });
-
+            bindBody();
 
             // COMPLETED: Set the transition name of the Shared View
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-                mPhotoView.setTransitionName(titleView.getText().toString());
+                mPhotoView.setTransitionName(title);
+            }
+
+            // Taken after a sync or known once the photo has been shown before, else
+            // generated when it has loaded
+            final String photoUrl = mArticle.getPhotoUrl();
+            final int syncedColor = mArticle.getDarkMutedColor();
+            final PaletteService.Colors colors = syncedColor != 0 ? null
+                    : mPaletteService.peek(photoUrl);
+            if (syncedColor != 0) {
+                mBodyAdapter.setMetaBarColor(syncedColor);
+            } else if (colors != null) {
+                mBodyAdapter.setMetaBarColor(colors.getDarkMutedColor(mMutedColor));
             }
 
             // COMPLETED: Handle the image loading with Picasso instead of the ImageLoaderHelper
             Picasso.get()
-                    .load(mCursor.getString(ArticleLoader.Query.PHOTO_URL))
+                    .load(photoUrl)
                     .placeholder(R.drawable.empty_detail)
                     .error(R.drawable.empty_detail)
                     .into(mPhotoView, new Callback() {
@@ -241,11 +259,10 @@ public class ArticleDetailFragment extends Fragment implements
                             // COMPLETED: Add the Palette method for generating the color background
                             Bitmap bitmap = ((BitmapDrawable)
                                     mPhotoView.getDrawable()).getBitmap();
-                            if (bitmap != null) {
-                                Palette palette = Palette.from(bitmap).generate();
-                                int bgColor = palette.getDarkMutedColor(mMutedColor);
-                                mMetaLayout = mRootView.findViewById(R.id.meta_bar);
-                                mMetaLayout.setBackgroundColor(bgColor);
+                            if (bitmap != null && syncedColor == 0) {
+                                cancelPaletteCallback();
+                                mPalettePhotoUrl = photoUrl;
+                                mPaletteService.generate(photoUrl, bitmap, mPaletteCallback);
                             }
 
                             // COMPLETED: Schedule the Enter Transition here
@@ -261,10 +278,36 @@ public class ArticleDetailFragment extends Fragment implements
                     });
         } else {
             mRootView.setVisibility(View.GONE);
-            titleView.setText("N/A");
-            bylineView.setText("N/A" );
-            bodyView.setText("N/A");
+            mBodyAdapter.setHeader("N/A", "N/A");
+            mBodyAdapter.setParagraphs(null);
+        }
+    }
+
+    private void bindBody() {
+        final String contentHash = mArticle.getContentHash();
+        if (!mBodyRequested || !TextUtils.equals(mBodyHash, contentHash)) {
+            // New article or its content changed, the old rendering no longer applies
+            final BodyRenderer renderer = BodyRenderer.getInstance(getActivity());
+            mBodyRequested = true;
+            mBodyHash = contentHash;
+            mParagraphs = renderer.peek(mItemId, contentHash);
+            if (mParagraphs == null) {
+                renderer.render(mItemId, contentHash, new BodyRenderer.Callback() {
+                    @Override
+                    public void onBodyRendered(long itemId, List<Spanned> paragraphs) {
+                        if (!isAdded() || mRootView == null || mArticle == null
+                                || !TextUtils.equals(contentHash, mBodyHash)) {
+                            return;
+                        }
+                        mParagraphs = paragraphs;
+                        // Only the body changed, leave the header, photo and transition alone
+                        bindBody();
+                    }
+                });
+            }
         }
+
+        mBodyAdapter.setParagraphs(mParagraphs);
     }
 
     /**
@@ -289,35 +332,32 @@ public class ArticleDetailFragment extends Fragment implements
         );
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newInstanceForItemId(getActivity(), mItemId);
-    }
-
-    @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
-        if (!isAdded()) {
-            if (cursor != null) {
-                cursor.close();
-            }
-            return;
-        }
-
-        mCursor = cursor;
-        if (mCursor != null && !mCursor.moveToFirst()) {
-            Log.e(TAG, "Error reading item detail cursor");
-            mCursor.close();
-            mCursor = null;
-        }
+    // Article metadata comes from the shared repository, usually without a provider query
+    private final LoaderManager.LoaderCallbacks<Article> mArticleCallbacks =
+            new LoaderManager.LoaderCallbacks<Article>() {
+                @Override
+                public Loader<Article> onCreateLoader(int id, Bundle args) {
+                    return new ArticleItemLoader(getActivity(), mItemId);
+                }
 
-        bindViews();
-    }
+                @Override
+                public void onLoadFinished(Loader<Article> loader, Article article) {
+                    if (!isAdded()) {
+                        return;
+                    }
+                    if (article == null) {
+                        Log.e(TAG, "Article " + mItemId + " not found");
+                    }
+                    mArticle = article;
+                    bindViews();
+                }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
-        mCursor = null;
-        bindViews();
-    }
+                @Override
+                public void onLoaderReset(Loader<Article> loader) {
+                    mArticle = null;
+                    bindViews();
+                }
+            };
 
     // TODO: Find out what this method does
     //TODO: Check if I need this method
@@ -6,14 +6,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.os.Bundle;
-import android.support.annotation.NonNull;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.design.widget.CoordinatorLayout;
 import android.support.design.widget.Snackbar;
-import android.support.v4.app.LoaderManager;
 import android.support.v4.app.SharedElementCallback;
-import android.support.v4.content.Loader;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.RecyclerView;
@@ -24,7 +23,8 @@ import android.view.View;
 
 import com.example.xyzreader.R;
 import com.example.xyzreader.adapters.ArticlesAdapter;
-import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ItemsContract;
+import com.example.xyzreader.data.SyncScheduler;
 import com.example.xyzreader.data.UpdaterService;
 
 import java.util.List;
@@ -36,8 +36,7 @@ import java.util.Map;
  * touched, lead to a {@link ArticleDetailActivity} representing item details. On tablets, the
  * activity presents a grid of items as cards.
  */
-public class ArticleListActivity extends AppCompatActivity implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+public class ArticleListActivity extends AppCompatActivity {
 
     private static final String TAG = ArticleListActivity.class.getSimpleName();
 
@@ -68,10 +67,14 @@ public class ArticleListActivity extends AppCompatActivity implements
         swipeToRefresh();
 
         mRecyclerView = findViewById(R.id.recycler_view);
-        getSupportLoaderManager().initLoader(0, null, this);
+        setUpRecyclerView();
+        getContentResolver().registerContentObserver(
+                ItemsContract.Items.buildDirUri(), true, mArticlesObserver);
 
         if (savedInstanceState == null) {
-            refresh();
+            // Render whatever is stored right away and only go to the network if it is stale
+            SyncScheduler.syncIfStale(this);
+            SyncScheduler.schedule(this);
         } else {
             // COMPLETED: Save the current position upon rotation
             currentPosition = savedInstanceState.getInt(KEY_CURRENT_POSITION, 0);
@@ -80,8 +83,35 @@ public class ArticleListActivity extends AppCompatActivity implements
         Log.d(TAG, "Current position clicked: " + currentPosition);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        getContentResolver().unregisterContentObserver(mArticlesObserver);
+        mArticlesAdapter.close();
+    }
+
+    private void setUpRecyclerView() {
+        mArticlesAdapter = new ArticlesAdapter(this);
+        mRecyclerView.setAdapter(mArticlesAdapter);
+        int columnCount = getResources().getInteger(R.integer.list_column_count);
+
+        StaggeredGridLayoutManager sglm =
+                new StaggeredGridLayoutManager(columnCount, StaggeredGridLayoutManager.VERTICAL);
+        mRecyclerView.setLayoutManager(sglm);
+        mRecyclerView.addOnScrollListener(mArticlesAdapter.getThumbnailPrefetcher());
+    }
+
+    // The adapter pages through the provider itself, so it has to be told when the data changes
+    private final ContentObserver mArticlesObserver =
+            new ContentObserver(new Handler(Looper.getMainLooper())) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    mArticlesAdapter.reload();
+                }
+            };
+
     private void refresh() {
-        startService(new Intent(this, UpdaterService.class));
+        UpdaterService.requestSync(this);
     }
 
     /**
@@ -136,36 +166,6 @@ public class ArticleListActivity extends AppCompatActivity implements
         mSwipeRefreshLayout.setRefreshing(mIsRefreshing);
     }
 
-    @NonNull
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        return ArticleLoader.newAllArticlesInstance(this);
-    }
-
-    @Override
-    public void onLoadFinished(@NonNull Loader<Cursor> cursorLoader, Cursor cursor) {
-        mArticlesAdapter = new ArticlesAdapter(this, cursor);
-        mArticlesAdapter.setHasStableIds(true);
-        mRecyclerView.setAdapter(mArticlesAdapter);
-        int columnCount = getResources().getInteger(R.integer.list_column_count);
-
-        StaggeredGridLayoutManager sglm =
-                new StaggeredGridLayoutManager(columnCount, StaggeredGridLayoutManager.VERTICAL);
-        mRecyclerView.setLayoutManager(sglm);
-
-        // COMPLETED: Swap the cursor here
-        mArticlesAdapter.swapCursor(cursor);
-    }
-
-    @Override
-    public void onLoaderReset(@NonNull Loader<Cursor> loader) {
-        mRecyclerView.setAdapter(null);
-
-        // COMPLETED:
-        mArticlesAdapter.swapCursor(null);
-    }
-
-
     /**
      * TODO: Remove if not in use
      * COMPLETED: Add this shared element for exit transition
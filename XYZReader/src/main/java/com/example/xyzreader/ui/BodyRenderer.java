@@ -0,0 +1,137 @@
+package com.example.xyzreader.ui;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Html;
+import android.text.Spanned;
+import android.util.LruCache;
+
+import com.example.xyzreader.data.ArticleLoader;
+import com.example.xyzreader.data.ItemsContract;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Loads article bodies and turns them into styled paragraphs on a background thread, so the
+ * detail screen can show them as list items. Results are kept in an LRU bounded by text length
+ * and keyed by item id and content hash, so reopening an article does no parsing, and a
+ * changed article never gets a stale body.
+ */
+class BodyRenderer {
+    // Paragraphs are separated by blank lines
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("(\r?\n)[ \t]*(\r?\n)+");
+    // Within a paragraph the feed uses plain line breaks, which HTML would fold into spaces
+    private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\n");
+    // Characters of rendered text to keep, roughly 2 bytes each plus spans
+    private static final int CACHE_SIZE_CHARS = 512 * 1024;
+
+    private static BodyRenderer sInstance;
+
+    interface Callback {
+        /** Called on the main thread, {@code paragraphs} is {@code null} if the article has none. */
+        void onBodyRendered(long itemId, List<Spanned> paragraphs);
+    }
+
+    private final ContentResolver mResolver;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final LruCache<String, List<Spanned>> mCache =
+            new LruCache<String, List<Spanned>>(CACHE_SIZE_CHARS) {
+                @Override
+                protected int sizeOf(String key, List<Spanned> value) {
+                    int length = 1;
+                    for (Spanned paragraph : value) {
+                        length += paragraph.length();
+                    }
+                    return length;
+                }
+            };
+
+    private BodyRenderer(Context context) {
+        mResolver = context.getContentResolver();
+    }
+
+    static synchronized BodyRenderer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BodyRenderer(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the rendered body if it is cached, {@code null} otherwise
+     */
+    List<Spanned> peek(long itemId, String contentHash) {
+        return mCache.get(cacheKey(itemId, contentHash));
+    }
+
+    /**
+     * Delivers the rendered body to {@code callback}, right away if it is cached.
+     */
+    void render(final long itemId, final String contentHash, final Callback callback) {
+        final String key = cacheKey(itemId, contentHash);
+        final List<Spanned> cached = mCache.get(key);
+        if (cached != null) {
+            callback.onBodyRendered(itemId, cached);
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Spanned> rendered = mCache.get(key);
+                if (rendered == null) {
+                    final String body = queryBody(itemId);
+                    if (body != null) {
+                        rendered = renderParagraphs(body);
+                        mCache.put(key, rendered);
+                    }
+                }
+                final List<Spanned> result = rendered;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onBodyRendered(itemId, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private static List<Spanned> renderParagraphs(String body) {
+        final String[] paragraphs = PARAGRAPH_BREAK.split(body.trim());
+        final List<Spanned> rendered = new ArrayList<Spanned>(paragraphs.length);
+        for (String paragraph : paragraphs) {
+            if (paragraph.trim().isEmpty()) {
+                continue;
+            }
+            rendered.add(Html.fromHtml(LINE_BREAK.matcher(paragraph).replaceAll("<br />")));
+        }
+        return Collections.unmodifiableList(rendered);
+    }
+
+    private String queryBody(long itemId) {
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildBodyUri(itemId),
+                ArticleLoader.BodyQuery.PROJECTION, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getString(ArticleLoader.BodyQuery.BODY) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String cacheKey(long itemId, String contentHash) {
+        return itemId + ":" + contentHash;
+    }
+}
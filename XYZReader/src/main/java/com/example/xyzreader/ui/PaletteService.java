@@ -0,0 +1,199 @@
+package com.example.xyzreader.ui;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.graphics.Palette;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Generates the colors the UI takes from article images on a background thread, from a
+ * downscaled copy of the bitmap. Results are kept per image URL in memory and in shared
+ * preferences, so each image is analysed once and its colors are at hand on every later bind,
+ * also after a restart. The stored colors are read on the background thread too; until they
+ * are, {@link #peek} returns {@code null} and {@link #generate} waits for them.
+ */
+public final class PaletteService {
+    // Palette scales the bitmap down to about this many pixels before quantizing it
+    private static final int RESIZE_BITMAP_AREA = 112 * 112;
+    // The least recently used colors are dropped past this, feeds are much smaller
+    private static final int MAX_STORED_ENTRIES = 1000;
+
+    private static final String PREFS_NAME = "palette_colors";
+
+    private static PaletteService sInstance;
+
+    /**
+     * Colors taken from an image. A color is 0 if the image has no matching swatch, swatch
+     * colors are always opaque so this can't clash with a real one.
+     */
+    public static final class Colors {
+        private final int mMuted;
+        private final int mDarkMuted;
+
+        public Colors(int muted, int darkMuted) {
+            mMuted = muted;
+            mDarkMuted = darkMuted;
+        }
+
+        public int getMutedColor(int defaultColor) {
+            return mMuted != 0 ? mMuted : defaultColor;
+        }
+
+        public int getDarkMutedColor(int defaultColor) {
+            return mDarkMuted != 0 ? mDarkMuted : defaultColor;
+        }
+
+        long pack() {
+            return ((long) mMuted << 32) | (mDarkMuted & 0xFFFFFFFFL);
+        }
+
+        static Colors unpack(long packed) {
+            return new Colors((int) (packed >>> 32), (int) packed);
+        }
+    }
+
+    public interface Callback {
+        /** Called on the main thread. */
+        void onColorsGenerated(String url, Colors colors);
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    // Only touched on mExecutor
+    private SharedPreferences mPreferences;
+    // Every stored color pair, least recently used first. The order of the colors read at start
+    // is not kept, they all count as used before anything peeked since.
+    private final LinkedHashMap<String, Colors> mColors =
+            new LinkedHashMap<String, Colors>(16, 0.75f, true);
+    // Callbacks waiting for a URL being analysed, only touched on the main thread
+    private final Map<String, Set<Callback>> mPending = new HashMap<String, Set<Callback>>();
+
+    private PaletteService(final Context context) {
+        // Ahead of any generate() task, which finds the stored colors in place
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(context);
+            }
+        });
+    }
+
+    public static synchronized PaletteService getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PaletteService(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the colors of the image at {@code url} if they are known, {@code null} otherwise
+     */
+    public Colors peek(String url) {
+        if (url == null) {
+            return null;
+        }
+        synchronized (mColors) {
+            return mColors.get(url);
+        }
+    }
+
+    /**
+     * Delivers the colors of {@code bitmap}, loaded from {@code url}, to {@code callback}: right
+     * away if they are known, otherwise once they have been generated in the background. The
+     * bitmap must not be recycled meanwhile.
+     */
+    public void generate(final String url, final Bitmap bitmap, Callback callback) {
+        final Colors known = peek(url);
+        if (known != null) {
+            callback.onColorsGenerated(url, known);
+            return;
+        }
+
+        Set<Callback> callbacks = mPending.get(url);
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return;
+        }
+        callbacks = new HashSet<Callback>();
+        callbacks.add(callback);
+        mPending.put(url, callbacks);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Asked for before the stored colors were read, they may be among them
+                Colors generated = peek(url);
+                if (generated == null) {
+                    final Palette palette = Palette.from(bitmap)
+                            .resizeBitmapArea(RESIZE_BITMAP_AREA)
+                            .generate();
+                    generated = new Colors(palette.getMutedColor(0),
+                            palette.getDarkMutedColor(0));
+                    store(url, generated);
+                }
+                final Colors colors = generated;
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        final Set<Callback> waiting = mPending.remove(url);
+                        if (waiting == null) {
+                            return;
+                        }
+                        for (Callback waitingCallback : waiting) {
+                            waitingCallback.onColorsGenerated(url, colors);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops delivering to {@code callback}, e.g. when its view is rebound to another image.
+     */
+    public void cancel(String url, Callback callback) {
+        final Set<Callback> callbacks = mPending.get(url);
+        if (callbacks != null) {
+            callbacks.remove(callback);
+        }
+    }
+
+    /** Runs on mExecutor. */
+    private void load(Context context) {
+        mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        final Map<String, ?> stored = mPreferences.getAll();
+        synchronized (mColors) {
+            for (Map.Entry<String, ?> entry : stored.entrySet()) {
+                if (entry.getValue() instanceof Long) {
+                    mColors.put(entry.getKey(), Colors.unpack((Long) entry.getValue()));
+                }
+            }
+        }
+    }
+
+    /** Runs on mExecutor. */
+    private void store(String url, Colors colors) {
+        final SharedPreferences.Editor editor = mPreferences.edit();
+        synchronized (mColors) {
+            mColors.put(url, colors);
+            final Iterator<String> eldest = mColors.keySet().iterator();
+            while (mColors.size() > MAX_STORED_ENTRIES) {
+                editor.remove(eldest.next());
+                eldest.remove();
+            }
+        }
+        editor.putLong(url, colors.pack()).apply();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+
+import com.example.xyzreader.remote.RemoteArticle;
+import com.example.xyzreader.remote.RemoteArticles;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Times {@link ArticleConverter} on a sync batch of feed-sized articles, converted on the
+ * calling thread alone and with pools of one thread up to one per spare core.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ArticleConverterBenchmarkTest {
+    // ArticleSyncer converts the feed in batches of this many articles
+    private static final int BATCH_SIZE = 100;
+    // Roughly the length of a feed article's body
+    private static final int BODY_LENGTH = 8000;
+    private static final int WARM_UP_RUNS = 20;
+    private static final int RUNS = 50;
+
+    @Test
+    public void parallelConversionIsFasterThanSequential() throws InterruptedException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        assumeTrue("Needs a second core to convert in parallel", cores > 1);
+        final List<RemoteArticle> articles = articles(BATCH_SIZE);
+
+        final long sequentialNanos = medianSequentialNanos(articles);
+        System.out.println("Converting " + BATCH_SIZE + " articles on " + cores
+                + " cores, median: sequential " + micros(sequentialNanos) + "us");
+
+        long defaultNanos = 0;
+        for (int threads = 1; threads < cores; threads++) {
+            final long nanos = medianParallelNanos(articles, threads);
+            System.out.println("  caller and " + threads + " pool threads "
+                    + micros(nanos) + "us, " + speedup(sequentialNanos, nanos) + "x");
+            if (threads == Math.min(ArticleConverter.MAX_THREADS, cores - 1)) {
+                defaultNanos = nanos;
+            }
+        }
+        assertTrue("Parallel conversion took " + micros(defaultNanos) + "us, sequential "
+                + micros(sequentialNanos) + "us", defaultNanos < sequentialNanos);
+    }
+
+    private static long medianSequentialNanos(List<RemoteArticle> articles) {
+        final long[] nanos = new long[RUNS];
+        for (int run = -WARM_UP_RUNS; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            final List<ContentValues> converted = new ArrayList<ContentValues>(articles.size());
+            for (RemoteArticle article : articles) {
+                converted.add(ArticleConverter.buildContentValues(article));
+            }
+            if (run >= 0) {
+                nanos[run] = System.nanoTime() - start;
+            }
+            assertEquals(articles.size(), converted.size());
+        }
+        Arrays.sort(nanos);
+        return nanos[RUNS / 2];
+    }
+
+    private static long medianParallelNanos(List<RemoteArticle> articles, int threads)
+            throws InterruptedException {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        try {
+            executor.prestartAllCoreThreads();
+            final long[] nanos = new long[RUNS];
+            for (int run = -WARM_UP_RUNS; run < RUNS; run++) {
+                final long start = System.nanoTime();
+                final List<ContentValues> converted = ArticleConverter.convert(articles, executor);
+                if (run >= 0) {
+                    nanos[run] = System.nanoTime() - start;
+                }
+                assertEquals(articles.size(), converted.size());
+            }
+            Arrays.sort(nanos);
+            return nanos[RUNS / 2];
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<RemoteArticle> articles(int count) {
+        final StringBuilder body = new StringBuilder(BODY_LENGTH + 100);
+        final List<RemoteArticle> articles = new ArrayList<RemoteArticle>(count);
+        for (int i = 0; i < count; i++) {
+            body.setLength(0);
+            while (body.length() < BODY_LENGTH) {
+                body.append("Paragraph ").append(body.length()).append(" of article ")
+                        .append(i).append(", with some words to hash.\r\n\r\n");
+            }
+            articles.add(RemoteArticles.create(Integer.toString(i), "Article " + i,
+                    "2014-05-12T16:30:00.000", body.toString()));
+        }
+        return articles;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static String speedup(long sequentialNanos, long nanos) {
+        return String.format("%.2f", (double) sequentialNanos / Math.max(nanos, 1));
+    }
+}
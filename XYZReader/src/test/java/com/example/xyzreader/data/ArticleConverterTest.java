@@ -0,0 +1,58 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+
+import com.example.xyzreader.remote.RemoteArticle;
+import com.example.xyzreader.remote.RemoteArticles;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ArticleConverterTest {
+
+    @Test
+    public void keepsOrderOfSmallBatches() throws InterruptedException {
+        assertConvertedInOrder(articles(5));
+    }
+
+    @Test
+    public void keepsOrderOfParallelBatches() throws InterruptedException {
+        // Sizes around the chunk boundaries, including ones that don't divide evenly
+        for (int size : new int[]{32, 33, 100, 257}) {
+            assertConvertedInOrder(articles(size));
+        }
+    }
+
+    @Test
+    public void convertsEmptyBatch() throws InterruptedException {
+        assertEquals(0, ArticleConverter.convert(new ArrayList<RemoteArticle>()).size());
+    }
+
+    private static void assertConvertedInOrder(List<RemoteArticle> articles)
+            throws InterruptedException {
+        final List<ContentValues> converted = ArticleConverter.convert(articles);
+        assertEquals(articles.size(), converted.size());
+        for (int i = 0; i < articles.size(); i++) {
+            assertEquals(ArticleConverter.buildContentValues(articles.get(i)),
+                    converted.get(i));
+        }
+    }
+
+    private static List<RemoteArticle> articles(int count) {
+        final List<RemoteArticle> articles = new ArrayList<RemoteArticle>(count);
+        for (int i = 0; i < count; i++) {
+            articles.add(RemoteArticles.create(Integer.toString(i), "Article " + i,
+                    "2014-05-12T16:30:00.000"));
+        }
+        return articles;
+    }
+}
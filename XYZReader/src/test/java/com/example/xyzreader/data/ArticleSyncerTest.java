@@ -0,0 +1,138 @@
+package com.example.xyzreader.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Syncs against a {@link MockWebServer} serving the feed with validators.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ArticleSyncerTest {
+    private static final String ETAG = "\"v1\"";
+
+    private Context mContext;
+    private MockWebServer mServer;
+    private ArticleSyncer mSyncer;
+
+    @Before
+    public void setUp() throws IOException {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        mContext = RuntimeEnvironment.application;
+        mServer = new MockWebServer();
+        mServer.start();
+        mSyncer = new ArticleSyncer(mContext, new OkHttpClient(), mServer.url("/feed").url());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+        SQLiteDatabase.deleteDatabase(mContext.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void notModifiedFeedTouchesNothing() throws Exception {
+        mServer.enqueue(feedResponse(3));
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        assertTrue(mSyncer.sync());
+        mServer.takeRequest();
+        final List<String> hashes = queryContentHashes();
+        assertEquals(3, hashes.size());
+        allowNextSync();
+
+        final long notifications = ItemsProvider.getNotificationCount();
+        assertTrue(mSyncer.sync());
+
+        assertEquals(ETAG, mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(SyncStatus.OUTCOME_NOT_MODIFIED, SyncStatus.getLastOutcome(mContext));
+        assertEquals(hashes, queryContentHashes());
+        assertEquals(notifications, ItemsProvider.getNotificationCount());
+    }
+
+    @Test
+    public void failedSyncClearsValidators() throws Exception {
+        mServer.enqueue(feedResponse(3));
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(feedResponse(3));
+
+        assertTrue(mSyncer.sync());
+        mServer.takeRequest();
+        allowNextSync();
+
+        assertFalse(mSyncer.sync());
+        assertEquals(ETAG, mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(3, queryContentHashes().size());
+        allowNextSync();
+
+        assertTrue(mSyncer.sync());
+        final RecordedRequest retry = mServer.takeRequest();
+        assertNull(retry.getHeader("If-None-Match"));
+        assertNull(retry.getHeader("If-Modified-Since"));
+    }
+
+    /** Moves the last sync out of the window in which repeated requests are answered by it. */
+    private void allowNextSync() {
+        SyncStatus.recordEnd(mContext, 0, SyncStatus.getLastOutcome(mContext));
+    }
+
+    private List<String> queryContentHashes() {
+        final List<String> hashes = new ArrayList<String>();
+        final Cursor cursor = mContext.getContentResolver().query(
+                ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items.CONTENT_HASH}, null, null,
+                ItemsContract.Items._ID);
+        try {
+            while (cursor.moveToNext()) {
+                hashes.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return hashes;
+    }
+
+    static MockResponse feedResponse(int count) {
+        final StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                feed.append(',');
+            }
+            feed.append("{\"id\":\"").append(i).append('"')
+                    .append(",\"author\":\"Author\"")
+                    .append(",\"title\":\"Article ").append(i).append('"')
+                    .append(",\"body\":\"Body of article ").append(i).append('"')
+                    .append(",\"thumb\":\"http://example.com/thumb.jpg\"")
+                    .append(",\"photo\":\"http://example.com/photo.jpg\"")
+                    .append(",\"aspect_ratio\":\"1.5\"")
+                    .append(",\"published_date\":\"2014-05-12T16:30:00.000\"}");
+        }
+        return new MockResponse()
+                .setHeader("ETag", ETAG)
+                .setBody(feed.append(']').toString());
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsDatabaseTest {
+    // Rows written by the sync in the concurrency test, all in one transaction
+    private static final int SYNC_ROWS = 5000;
+    // Slowest list query allowed while that transaction is open, generous for slow CI machines
+    private static final long MAX_READ_MILLIS = 250;
+
+    private File mFile;
+    private ItemsDatabase mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mFile = RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME);
+        mHelper = new ItemsDatabase(RuntimeEnvironment.application);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        SQLiteDatabase.deleteDatabase(mFile);
+    }
+
+    @Test
+    public void usesWriteAheadLog() {
+        assertTrue(mDb.isWriteAheadLoggingEnabled());
+        assertEquals("wal", DatabaseUtils.stringForQuery(mDb, "PRAGMA journal_mode", null));
+        // 1 is NORMAL
+        assertEquals(1, DatabaseUtils.longForQuery(mDb, "PRAGMA synchronous", null));
+    }
+
+    @Test
+    public void checkpointsOnceEnoughRowsWereCommitted() {
+        // Well below SQLite's own auto-checkpoint, so only onWritesCommitted moves the pages
+        writeRows(0, 200);
+        final long walOnlyLength = mFile.length();
+        mHelper.onWritesCommitted(mDb, 200);
+        assertEquals("Checkpointed below the threshold", walOnlyLength, mFile.length());
+
+        mDb.beginTransactionNonExclusive();
+        try {
+            writeRows(200, 200);
+            // Past the threshold, but a checkpoint can't run inside the transaction
+            mHelper.onWritesCommitted(mDb, 400);
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+        assertEquals("Checkpointed inside the transaction", walOnlyLength, mFile.length());
+
+        // The deferred checkpoint runs with the next commit, however small
+        mHelper.onWritesCommitted(mDb, 1);
+        assertTrue("Pages were not copied back, database is " + mFile.length() + " bytes",
+                mFile.length() > walOnlyLength);
+    }
+
+    @Test
+    public void listQueriesRunDuringLargeSyncTransaction() throws Exception {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        final ContentResolver resolver = RuntimeEnvironment.application.getContentResolver();
+        resolver.bulkInsert(ItemsContract.Items.buildDirUri(),
+                ItemsProviderSyncTest.items(0, 100, "v1"));
+
+        final Bundle begin = resolver.call(ItemsContract.Items.buildDirUri(),
+                ItemsContract.Items.METHOD_BEGIN_SYNC_GENERATION, null, null);
+        final long generation = begin.getLong(ItemsContract.Items.EXTRA_SYNC_GENERATION);
+        final ContentValues[] rows = ItemsProviderSyncTest.items(100, SYNC_ROWS, "v1");
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    // One chunk, the write transaction stays open for the whole batch
+                    resolver.bulkInsert(ItemsContract.Items.buildSyncUri(generation, SYNC_ROWS),
+                            rows);
+                } finally {
+                    writing.set(false);
+                }
+            }
+        });
+        writer.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        int reads = 0;
+        long maxNanos = 0;
+        final long[] nanos = new long[10000];
+        while (writing.get() && reads < nanos.length) {
+            final long start = System.nanoTime();
+            final Cursor cursor = resolver.query(ItemsContract.Items.buildPageUri(0, -1, 30),
+                    ArticleLoader.Query.PROJECTION, null, null, null);
+            try {
+                // Published rows only, the sync's own rows stay hidden
+                assertEquals(30, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+            nanos[reads++] = System.nanoTime() - start;
+            maxNanos = Math.max(maxNanos, nanos[reads - 1]);
+        }
+        writer.join();
+
+        Arrays.sort(nanos, 0, reads);
+        final long medianMillis =
+                reads > 0 ? TimeUnit.NANOSECONDS.toMillis(nanos[reads / 2]) : -1;
+        final long maxMillis = TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        System.out.println("List queries during a " + SYNC_ROWS + " row sync: " + reads
+                + ", median " + medianMillis + "ms, max " + maxMillis + "ms");
+        assertTrue("No list query finished while the sync was writing", reads > 0);
+        assertTrue("Slowest list query took " + maxMillis + "ms", maxMillis <= MAX_READ_MILLIS);
+    }
+
+    private void writeRows(int from, int count) {
+        final char[] body = new char[2000];
+        Arrays.fill(body, 'x');
+        final ItemsUpserter upserter = new ItemsUpserter(mDb);
+        try {
+            for (int i = 0; i < count; i++) {
+                final ContentValues values = ItemsProviderSyncTest.items(from + i, 1, "v1")[0];
+                values.put(ItemsContract.Items.BODY, new String(body));
+                upserter.upsert(values);
+            }
+        } finally {
+            upserter.close();
+        }
+    }
+}
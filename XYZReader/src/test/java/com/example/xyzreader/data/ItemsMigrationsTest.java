@@ -0,0 +1,129 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens a database written by version 2 of the app and checks that {@link ItemsDatabase}
+ * upgrades it to the current schema without losing articles.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsMigrationsTest {
+    private static final String DATE = "2014-05-12T16:30:00.000";
+
+    private File mFile;
+    private ItemsDatabase mHelper;
+
+    @Before
+    public void setUp() {
+        mFile = RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME);
+        mFile.getParentFile().mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        if (mHelper != null) {
+            mHelper.close();
+        }
+        SQLiteDatabase.deleteDatabase(mFile);
+    }
+
+    @Test
+    public void upgradesVersion2KeepingArticles() throws Exception {
+        final SQLiteDatabase v2 = SQLiteDatabase.openOrCreateDatabase(mFile, null);
+        v2.execSQL("CREATE TABLE items ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + "server_id TEXT,"
+                + "title TEXT NOT NULL,"
+                + "author TEXT NOT NULL,"
+                + "body TEXT NOT NULL,"
+                + "thumb_url TEXT NOT NULL,"
+                + "photo_url TEXT NOT NULL,"
+                + "aspect_ratio REAL NOT NULL DEFAULT 1.5,"
+                + "published_date TEXT NOT NULL"
+                + ")");
+        insertV2(v2, "1", "Stale copy", "An older body");
+        insertV2(v2, "1", "First", "The quick brown fox");
+        insertV2(v2, "2", "Second", "Jumps over the lazy dog");
+        v2.setVersion(2);
+        v2.close();
+
+        mHelper = new ItemsDatabase(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        assertEquals(ItemsDatabase.DATABASE_VERSION, db.getVersion());
+        // Migration 3 keeps the newest row per server id
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, ItemsProvider.Tables.ITEMS));
+
+        final Cursor cursor = db.rawQuery("SELECT i.title,i.published_date,"
+                + "typeof(i.published_date),i.sync_generation,i.muted_color,b.body"
+                + " FROM items i JOIN item_bodies b ON b.item_id=i._id"
+                + " WHERE i.server_id='1'", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("First", cursor.getString(0));
+            assertEquals(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.sss").parse(DATE).getTime(),
+                    cursor.getLong(1));
+            assertEquals("integer", cursor.getString(2));
+            assertEquals(0, cursor.getLong(3));
+            assertTrue(cursor.isNull(4));
+            assertEquals("The quick brown fox", cursor.getString(5));
+        } finally {
+            cursor.close();
+        }
+
+        // Existing bodies are searchable
+        assertEquals(1, DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM items_search WHERE items_search MATCH 'lazy'", null));
+        assertEquals(0, DatabaseUtils.longForQuery(db,
+                "SELECT value FROM sync_meta WHERE name='published_generation'", null));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, ItemsProvider.Tables.ITEM_UPDATES));
+    }
+
+    @Test
+    public void recreatesVersionsTooOldToMigrate() {
+        final SQLiteDatabase v1 = SQLiteDatabase.openOrCreateDatabase(mFile, null);
+        v1.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY, title TEXT)");
+        v1.execSQL("INSERT INTO items (title) VALUES ('Lost')");
+        v1.setVersion(1);
+        v1.close();
+
+        mHelper = new ItemsDatabase(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        assertEquals(ItemsDatabase.DATABASE_VERSION, db.getVersion());
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, ItemsProvider.Tables.ITEMS));
+        assertFalse(ItemsMigrations.canMigrate(1, ItemsDatabase.DATABASE_VERSION));
+    }
+
+    private static void insertV2(SQLiteDatabase db, String serverId, String title, String body) {
+        final ContentValues values = new ContentValues();
+        values.put("server_id", serverId);
+        values.put("title", title);
+        values.put("author", "Author");
+        values.put("body", body);
+        values.put("thumb_url", "http://example.com/thumb.jpg");
+        values.put("photo_url", "http://example.com/photo.jpg");
+        values.put("aspect_ratio", 1.5);
+        values.put("published_date", DATE);
+        db.insertOrThrow("items", null, values);
+    }
+}
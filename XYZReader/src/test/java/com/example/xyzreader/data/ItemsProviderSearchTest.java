@@ -0,0 +1,166 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsProviderSearchTest {
+    private static final int LARGE_FEED_SIZE = 50000;
+    private static final int WARM_UP_RUNS = 3;
+    private static final int SEARCH_RUNS = 15;
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(
+                RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void matchQueryPrefixesTheLastWord() {
+        assertEquals("quick brown fox*", ItemsProvider.buildMatchQuery("quick brown fox"));
+    }
+
+    @Test
+    public void matchQueryDropsFtsSyntax() {
+        assertEquals("title fox jumps*", ItemsProvider.buildMatchQuery("title:\"fox\" -jumps*"));
+        assertEquals("cats or dogs*", ItemsProvider.buildMatchQuery("cats OR dogs"));
+        assertEquals("near 3 not*", ItemsProvider.buildMatchQuery("NEAR/3 NOT"));
+        assertEquals("café 2018*", ItemsProvider.buildMatchQuery("  café, (2018) "));
+    }
+
+    @Test
+    public void matchQueryIsNullWithoutWords() {
+        assertNull(ItemsProvider.buildMatchQuery(null));
+        assertNull(ItemsProvider.buildMatchQuery(""));
+        assertNull(ItemsProvider.buildMatchQuery(" \"*:- "));
+    }
+
+    @Test
+    public void searchRanksByHitCountThenRecency() {
+        final StringBuilder longBody = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            longBody.append("Lorem ipsum dolor sit amet. ");
+        }
+        longBody.append("A fox at last.");
+
+        insert("Long read", longBody.toString(), 4000L);
+        insert("Fox and friends", "The fox met another fox.", 1000L);
+        insert("Fox again", "The fox met another fox.", 2000L);
+        insert("Unrelated", "Nothing to see here.", 3000L);
+
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildSearchUri("fox"),
+                new String[]{ItemsContract.Items.TITLE}, null, null, null);
+        final List<String> titles = new ArrayList<String>();
+        try {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        // Three hits each, the newer first, then the single hit deep in the long body
+        assertEquals(Arrays.asList("Fox again", "Fox and friends", "Long read"), titles);
+    }
+
+    @Test
+    public void searchesLargeFeedQuickly() {
+        final String[] words = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur",
+                "adipiscing", "elit", "sed", "tempor", "incididunt", "labore", "magna"};
+        final ContentValues[] rows = new ContentValues[LARGE_FEED_SIZE];
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < rows.length; i++) {
+            body.setLength(0);
+            for (int w = 0; w < 200; w++) {
+                body.append(words[(i * 7 + w * 3) % words.length]).append(' ');
+            }
+            // About one article in a thousand mentions the rare word, one in ten the common one
+            if (i % 1000 == 0) {
+                body.append("zephyr ");
+            }
+            if (i % 10 == 0) {
+                body.append("river ");
+            }
+            rows[i] = values("Article " + i, body.toString(), i);
+        }
+        mResolver.bulkInsert(ItemsContract.Items.buildDirUri(), rows);
+
+        final long rareMillis = medianSearchMillis("zephyr", LARGE_FEED_SIZE / 1000);
+        final long commonMillis = medianSearchMillis("river", 50);
+        System.out.println("Search over " + LARGE_FEED_SIZE + " articles, median: rare term "
+                + rareMillis + "ms, common term " + commonMillis + "ms");
+        assertTrue("Rare term took " + rareMillis + "ms", rareMillis < 10);
+        // Thousands of matches are ranked from their hit counts, the text is never read
+        assertTrue("Common term took " + commonMillis + "ms", commonMillis < 100);
+    }
+
+    private long medianSearchMillis(String terms, int expectedCount) {
+        final long[] nanos = new long[SEARCH_RUNS];
+        for (int run = -WARM_UP_RUNS; run < SEARCH_RUNS; run++) {
+            final long start = System.nanoTime();
+            final Cursor cursor = mResolver.query(ItemsContract.Items.buildSearchUri(terms),
+                    null, null, null, null);
+            try {
+                assertEquals(expectedCount, cursor.getCount());
+                // Reads every column, snippets included
+                while (cursor.moveToNext()) {
+                    for (int i = 0; i < cursor.getColumnCount(); i++) {
+                        cursor.getString(i);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+            if (run >= 0) {
+                nanos[run] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        return TimeUnit.NANOSECONDS.toMillis(nanos[nanos.length / 2]);
+    }
+
+    private void insert(String title, String body, long publishedDate) {
+        mResolver.insert(ItemsContract.Items.buildDirUri(), values(title, body, publishedDate));
+    }
+
+    private static ContentValues values(String title, String body, long publishedDate) {
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.SERVER_ID, title);
+        values.put(ItemsContract.Items.TITLE, title);
+        values.put(ItemsContract.Items.AUTHOR, "Author");
+        values.put(ItemsContract.Items.BODY, body);
+        values.put(ItemsContract.Items.THUMB_URL, "http://example.com/thumb.jpg");
+        values.put(ItemsContract.Items.PHOTO_URL, "http://example.com/photo.jpg");
+        values.put(ItemsContract.Items.PUBLISHED_DATE, publishedDate);
+        return values;
+    }
+}
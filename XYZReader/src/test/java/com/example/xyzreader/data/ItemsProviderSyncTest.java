@@ -0,0 +1,128 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives the provider through sync generations the way {@link ArticleSyncer} does.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsProviderSyncTest {
+    private static final int BATCH_SIZE = 100;
+    private static final int CHUNK_SIZE = 25;
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(
+                RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void firstSyncNotifiesOncePerPublishedBatch() {
+        final long generation = begin();
+        int inserted = 0;
+        for (int batch = 0; batch < 3; batch++) {
+            final long before = ItemsProvider.getNotificationCount();
+            mResolver.bulkInsert(ItemsContract.Items.buildSyncUri(generation, CHUNK_SIZE),
+                    items(inserted, BATCH_SIZE, "v1"));
+            inserted += BATCH_SIZE;
+            publish(generation, null);
+
+            assertEquals("Batch " + batch, 1, ItemsProvider.getNotificationCount() - before);
+            assertEquals(inserted, countVisible());
+        }
+
+        // The last publish of the sync has nothing new to show
+        final long before = ItemsProvider.getNotificationCount();
+        publish(generation, null);
+        assertEquals(0, ItemsProvider.getNotificationCount() - before);
+    }
+
+    @Test
+    public void laterSyncNotifiesOnceAtPublish() {
+        final long first = begin();
+        mResolver.bulkInsert(ItemsContract.Items.buildSyncUri(first, CHUNK_SIZE),
+                items(0, BATCH_SIZE, "v1"));
+        publish(first, null);
+
+        final long before = ItemsProvider.getNotificationCount();
+        final long second = begin();
+        // Changed rows are staged, new ones stay hidden
+        mResolver.bulkInsert(ItemsContract.Items.buildSyncUri(second, CHUNK_SIZE),
+                items(0, BATCH_SIZE, "v2"));
+        mResolver.bulkInsert(ItemsContract.Items.buildSyncUri(second, CHUNK_SIZE),
+                items(BATCH_SIZE, BATCH_SIZE, "v2"));
+        assertEquals(0, ItemsProvider.getNotificationCount() - before);
+        assertEquals(BATCH_SIZE, countVisible());
+
+        publish(second, null);
+        assertEquals(1, ItemsProvider.getNotificationCount() - before);
+        assertEquals(2 * BATCH_SIZE, countVisible());
+    }
+
+    private long begin() {
+        final Bundle result = mResolver.call(ItemsContract.Items.buildDirUri(),
+                ItemsContract.Items.METHOD_BEGIN_SYNC_GENERATION, null, null);
+        return result.getLong(ItemsContract.Items.EXTRA_SYNC_GENERATION);
+    }
+
+    private void publish(long generation, long[] staleIds) {
+        final Bundle extras = new Bundle();
+        extras.putLong(ItemsContract.Items.EXTRA_SYNC_GENERATION, generation);
+        extras.putLongArray(ItemsContract.Items.EXTRA_STALE_IDS, staleIds);
+        mResolver.call(ItemsContract.Items.buildDirUri(),
+                ItemsContract.Items.METHOD_PUBLISH_SYNC_GENERATION, null, extras);
+    }
+
+    private int countVisible() {
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items._ID}, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static ContentValues[] items(int from, int count, String version) {
+        final ContentValues[] items = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            final String serverId = Integer.toString(from + i);
+            final ContentValues values = new ContentValues();
+            values.put(ItemsContract.Items.SERVER_ID, serverId);
+            values.put(ItemsContract.Items.TITLE, "Article " + serverId + " " + version);
+            values.put(ItemsContract.Items.AUTHOR, "Author");
+            values.put(ItemsContract.Items.BODY, "Body of article " + serverId);
+            values.put(ItemsContract.Items.THUMB_URL, "http://example.com/thumb.jpg");
+            values.put(ItemsContract.Items.PHOTO_URL, "http://example.com/photo.jpg");
+            values.put(ItemsContract.Items.ASPECT_RATIO, 1.5f);
+            values.put(ItemsContract.Items.PUBLISHED_DATE, 1400000000000L + from + i);
+            values.put(ItemsContract.Items.CONTENT_HASH, serverId + version);
+            items[i] = values;
+        }
+        return items;
+    }
+}
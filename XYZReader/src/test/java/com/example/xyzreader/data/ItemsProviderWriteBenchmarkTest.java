@@ -0,0 +1,154 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the rows per second a sync writes through {@link ItemsProvider#bulkInsert} with
+ * the per-row insert and update operations it used to send through
+ * {@link ItemsProvider#applyBatch}. Both paths write the same rows in batches of the same size.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsProviderWriteBenchmarkTest {
+    private static final int BATCH_SIZE = 100;
+    private static final int[] FEED_SIZES = {1000, 10000, 100000};
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(
+                RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void bulkInsertWritesFasterThanApplyBatch() throws Exception {
+        // Warms up the statement caches and the JIT before anything is timed
+        writeWithBulkInsert(ItemsProviderSyncTest.items(0, BATCH_SIZE, "v1"));
+        writeWithApplyBatch(ItemsProviderSyncTest.items(0, BATCH_SIZE, "v2"));
+        deleteAll();
+
+        for (int size : FEED_SIZES) {
+            final ContentValues[] inserts = ItemsProviderSyncTest.items(0, size, "v1");
+            final ContentValues[] updates = ItemsProviderSyncTest.items(0, size, "v2");
+
+            final long bulkInsertNanos = writeWithBulkInsert(inserts);
+            final long bulkUpdateNanos = writeWithBulkInsert(updates);
+            assertEquals(size, countRows());
+            deleteAll();
+
+            final long batchInsertNanos = writeWithApplyBatch(inserts);
+            final long batchUpdateNanos = writeWithApplyBatch(updates);
+            assertEquals(size, countRows());
+            deleteAll();
+
+            System.out.println(size + " rows, rows/sec inserted: bulkInsert "
+                    + rowsPerSecond(size, bulkInsertNanos) + ", applyBatch "
+                    + rowsPerSecond(size, batchInsertNanos) + "; updated: bulkInsert "
+                    + rowsPerSecond(size, bulkUpdateNanos) + ", applyBatch "
+                    + rowsPerSecond(size, batchUpdateNanos));
+            assertTrue("bulkInsert inserted " + size + " rows slower than applyBatch",
+                    bulkInsertNanos < batchInsertNanos);
+            assertTrue("bulkInsert updated " + size + " rows slower than applyBatch",
+                    bulkUpdateNanos < batchUpdateNanos);
+        }
+    }
+
+    /**
+     * Writes the rows the way the sync does now, upserting each batch on its server id.
+     */
+    private long writeWithBulkInsert(ContentValues[] rows) {
+        final long start = System.nanoTime();
+        for (int from = 0; from < rows.length; from += BATCH_SIZE) {
+            mResolver.bulkInsert(ItemsContract.Items.buildDirUri(),
+                    Arrays.copyOfRange(rows, from, Math.min(from + BATCH_SIZE, rows.length)));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Writes the rows the way the sync used to, with an insert operation for each new server
+     * id and an update of the local row for each known one.
+     */
+    private long writeWithApplyBatch(ContentValues[] rows) throws Exception {
+        // The old sync read the local ids before it started writing
+        final Map<String, Long> localIds = readLocalIds();
+        final long start = System.nanoTime();
+        final ArrayList<ContentProviderOperation> operations =
+                new ArrayList<ContentProviderOperation>(BATCH_SIZE);
+        for (ContentValues values : rows) {
+            final Long id = localIds.get(values.getAsString(ItemsContract.Items.SERVER_ID));
+            if (id == null) {
+                operations.add(ContentProviderOperation
+                        .newInsert(ItemsContract.Items.buildDirUri())
+                        .withValues(values).build());
+            } else {
+                operations.add(ContentProviderOperation
+                        .newUpdate(ItemsContract.Items.buildItemUri(id))
+                        .withValues(values).build());
+            }
+            if (operations.size() >= BATCH_SIZE) {
+                mResolver.applyBatch(ItemsContract.CONTENT_AUTHORITY, operations);
+                operations.clear();
+            }
+        }
+        if (!operations.isEmpty()) {
+            mResolver.applyBatch(ItemsContract.CONTENT_AUTHORITY, operations);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Map<String, Long> readLocalIds() {
+        final Map<String, Long> ids = new HashMap<String, Long>();
+        final Cursor cursor = mResolver.query(ItemsContract.Items.buildDirUri(),
+                new String[]{ItemsContract.Items._ID, ItemsContract.Items.SERVER_ID},
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.put(cursor.getString(1), cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private int countRows() {
+        return readLocalIds().size();
+    }
+
+    private void deleteAll() {
+        mResolver.delete(ItemsContract.Items.buildDirUri(), null, null);
+    }
+
+    private static long rowsPerSecond(int rows, long nanos) {
+        return rows * 1000000000L / Math.max(nanos, 1);
+    }
+}
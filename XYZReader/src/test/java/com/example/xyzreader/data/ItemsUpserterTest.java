@@ -0,0 +1,138 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static com.example.xyzreader.data.ItemsProvider.Tables;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ItemsUpserterTest {
+    private ItemsDatabase mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mHelper = new ItemsDatabase(RuntimeEnvironment.application);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+        SQLiteDatabase.deleteDatabase(
+                RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void insertsUnknownServerIds() {
+        final ItemsUpserter upserter = new ItemsUpserter(mDb);
+        try {
+            upserter.upsert(item("1", "First", "Body one"));
+            upserter.upsert(item("2", "Second", "Body two"));
+        } finally {
+            upserter.close();
+        }
+
+        assertEquals(2, DatabaseUtils.queryNumEntries(mDb, Tables.ITEMS));
+        assertEquals("Body two", bodyOf("2"));
+    }
+
+    @Test
+    public void updatesKnownServerIdsInPlace() {
+        final ItemsUpserter upserter = new ItemsUpserter(mDb);
+        try {
+            upserter.upsert(item("1", "First", "Old body"));
+            final long id = idOf("1");
+
+            upserter.upsert(item("1", "Renamed", "New body"));
+
+            assertEquals(1, DatabaseUtils.queryNumEntries(mDb, Tables.ITEMS));
+            assertEquals(id, idOf("1"));
+            assertEquals("Renamed", titleOf("1"));
+            assertEquals("New body", bodyOf("1"));
+
+            // A row with other columns recompiles the statements and leaves the rest alone
+            final ContentValues title = new ContentValues();
+            title.put(ItemsContract.Items.SERVER_ID, "1");
+            title.put(ItemsContract.Items.TITLE, "Retitled");
+            upserter.upsert(title);
+        } finally {
+            upserter.close();
+        }
+
+        assertEquals("Retitled", titleOf("1"));
+        assertEquals("New body", bodyOf("1"));
+    }
+
+    @Test
+    public void stagesUpdatesToPublishedRowsWhileWritingAGeneration() {
+        final ItemsUpserter published = new ItemsUpserter(mDb);
+        try {
+            published.upsert(item("1", "Published", "Published body"));
+        } finally {
+            published.close();
+        }
+
+        final ItemsUpserter upserter = new ItemsUpserter(mDb, 1);
+        try {
+            upserter.upsert(item("1", "Changed", "Changed body"));
+            upserter.upsert(item("2", "New", "New body"));
+            // Rows of the generation being written are still hidden, they change in place
+            upserter.upsert(item("2", "Newer", "Newer body"));
+        } finally {
+            upserter.close();
+        }
+
+        assertEquals("Published", titleOf("1"));
+        assertEquals("Published body", bodyOf("1"));
+        assertEquals("Changed", DatabaseUtils.stringForQuery(mDb, "SELECT title FROM "
+                + Tables.ITEM_UPDATES + " WHERE server_id='1'", null));
+        assertEquals(1, DatabaseUtils.longForQuery(mDb, "SELECT sync_generation FROM "
+                + Tables.ITEM_UPDATES + " WHERE server_id='1'", null));
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(mDb, Tables.ITEM_UPDATES));
+        assertEquals("Newer", titleOf("2"));
+        assertEquals("Newer body", bodyOf("2"));
+        assertEquals(1, DatabaseUtils.longForQuery(mDb,
+                "SELECT sync_generation FROM items WHERE server_id='2'", null));
+    }
+
+    private static ContentValues item(String serverId, String title, String body) {
+        final ContentValues values = new ContentValues();
+        values.put(ItemsContract.Items.SERVER_ID, serverId);
+        values.put(ItemsContract.Items.TITLE, title);
+        values.put(ItemsContract.Items.AUTHOR, "Author");
+        values.put(ItemsContract.Items.BODY, body);
+        values.put(ItemsContract.Items.THUMB_URL, "http://example.com/thumb.jpg");
+        values.put(ItemsContract.Items.PHOTO_URL, "http://example.com/photo.jpg");
+        values.put(ItemsContract.Items.ASPECT_RATIO, 1.5f);
+        values.put(ItemsContract.Items.PUBLISHED_DATE, 1400000000000L);
+        return values;
+    }
+
+    private long idOf(String serverId) {
+        return DatabaseUtils.longForQuery(mDb,
+                "SELECT _id FROM items WHERE server_id=?", new String[]{serverId});
+    }
+
+    private String titleOf(String serverId) {
+        return DatabaseUtils.stringForQuery(mDb,
+                "SELECT title FROM items WHERE server_id=?", new String[]{serverId});
+    }
+
+    private String bodyOf(String serverId) {
+        return DatabaseUtils.stringForQuery(mDb, "SELECT b.body FROM item_bodies b"
+                + " JOIN items i ON i._id=b.item_id WHERE i.server_id=?", new String[]{serverId});
+    }
+}
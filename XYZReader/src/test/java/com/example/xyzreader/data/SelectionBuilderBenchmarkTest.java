@@ -0,0 +1,117 @@
+package com.example.xyzreader.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes allocated per query, by {@link SelectionBuilder} alone once its SQL is
+ * cached and by a whole list query through {@link ItemsProvider}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SelectionBuilderBenchmarkTest {
+    private static final int WARM_UP_RUNS = 20000;
+    private static final int RUNS = 100000;
+    private static final int PROVIDER_RUNS = 2000;
+    // Leaves room for the odd allocation of the JIT or the measurement itself
+    private static final long MAX_BUILDER_BYTES_PER_QUERY = 8;
+
+    private static final String SELECTION = ItemsContract.Items.SYNC_GENERATION + "<=?";
+    private static final String[] SELECTION_ARGS = {"0"};
+
+    private com.sun.management.ThreadMXBean mThreads;
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue("Needs per-thread allocation counters",
+                threads instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        SQLiteDatabase.deleteDatabase(
+                RuntimeEnvironment.application.getDatabasePath(ItemsDatabase.DATABASE_NAME));
+    }
+
+    @Test
+    public void repeatedQueryAllocatesNothingInBuilder() {
+        final SelectionBuilder builder = new SelectionBuilder();
+        final String[] columns = ArticleLoader.Query.PROJECTION.clone();
+        buildQueries(builder, columns, WARM_UP_RUNS);
+
+        final long before = allocatedBytes();
+        buildQueries(builder, columns, RUNS);
+        final long bytesPerQuery = (allocatedBytes() - before) / RUNS;
+
+        System.out.println("SelectionBuilder allocations per cached query: " + bytesPerQuery
+                + " bytes");
+        assertTrue("Allocated " + bytesPerQuery + " bytes per query",
+                bytesPerQuery <= MAX_BUILDER_BYTES_PER_QUERY);
+    }
+
+    /**
+     * Not asserted: what remains is the resolver, the cursor and its window, none of which
+     * the provider controls. Printed to compare against the builder's share.
+     */
+    @Test
+    public void reportsAllocationsOfProviderQuery() {
+        Robolectric.setupContentProvider(ItemsProvider.class, ItemsContract.CONTENT_AUTHORITY);
+        final ContentResolver resolver = RuntimeEnvironment.application.getContentResolver();
+        resolver.bulkInsert(ItemsContract.Items.buildDirUri(),
+                ItemsProviderSyncTest.items(0, 30, "v1"));
+
+        for (int run = 0; run < PROVIDER_RUNS / 10; run++) {
+            queryPage(resolver);
+        }
+        final long before = allocatedBytes();
+        for (int run = 0; run < PROVIDER_RUNS; run++) {
+            queryPage(resolver);
+        }
+        System.out.println("ItemsProvider allocations per page query: "
+                + (allocatedBytes() - before) / PROVIDER_RUNS + " bytes");
+    }
+
+    private static void buildQueries(SelectionBuilder builder, String[] columns, int count) {
+        for (int i = 0; i < count; i++) {
+            builder.reset()
+                    .table(ItemsProvider.Tables.ITEMS)
+                    .where(SELECTION, SELECTION_ARGS);
+            builder.buildQuery(columns, null, null, ItemsContract.Items.DEFAULT_SORT, "30");
+            assertEquals(1, builder.getSelectionArgs().length);
+        }
+    }
+
+    private static void queryPage(ContentResolver resolver) {
+        final Cursor cursor = resolver.query(ItemsContract.Items.buildPageUri(0, -1, 30),
+                ArticleLoader.Query.PROJECTION, null, null, null);
+        try {
+            cursor.moveToLast();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long allocatedBytes() {
+        return mThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
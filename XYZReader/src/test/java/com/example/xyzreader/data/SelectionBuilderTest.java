@@ -0,0 +1,97 @@
+package com.example.xyzreader.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs queries that differ in one part of their SQL through the same builder, so a cache key
+ * that missed that part would hand back the SQL of the previous query.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class SelectionBuilderTest {
+    private SQLiteDatabase mDb;
+    private final SelectionBuilder mBuilder = new SelectionBuilder();
+
+    @Before
+    public void setUp() {
+        mDb = SQLiteDatabase.create(null);
+        mDb.execSQL("CREATE TABLE a (name TEXT, n INTEGER)");
+        mDb.execSQL("CREATE TABLE b (name TEXT, n INTEGER)");
+        mDb.execSQL("INSERT INTO a VALUES ('a1',1),('a2',2),('a3',3)");
+        mDb.execSQL("INSERT INTO b VALUES ('b1',1),('b2',2)");
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void keysOnTable() {
+        assertEquals(Arrays.asList("a1", "a2", "a3"),
+                names(mBuilder.reset().table("a"), "name", null, null));
+        assertEquals(Arrays.asList("b1", "b2"),
+                names(mBuilder.reset().table("b"), "name", null, null));
+    }
+
+    @Test
+    public void keysOnSelectionText() {
+        // Same length and arguments, only the text of the clause differs
+        assertEquals(Arrays.asList("a1"),
+                names(mBuilder.reset().table("a").where("n<?", "2"), "name", null, null));
+        assertEquals(Arrays.asList("a3"),
+                names(mBuilder.reset().table("a").where("n>?", "2"), "name", null, null));
+        assertEquals(Arrays.asList("a1", "a2", "a3"),
+                names(mBuilder.reset().table("a"), "name", null, null));
+    }
+
+    @Test
+    public void keysOnColumnsAndMappings() {
+        assertEquals(Arrays.asList("a1", "a2", "a3"),
+                names(mBuilder.reset().table("a"), "name", null, null));
+        assertEquals(Arrays.asList("1", "2", "3"),
+                names(mBuilder.reset().table("a"), "n", null, null));
+        assertEquals(Arrays.asList("A1", "A2", "A3"),
+                names(mBuilder.reset().table("a").map("name", "upper(name)"), "name",
+                        null, null));
+    }
+
+    @Test
+    public void keysOnOrderAndLimit() {
+        assertEquals(Arrays.asList("a3", "a2", "a1"),
+                names(mBuilder.reset().table("a"), "name", "n DESC", null));
+        assertEquals(Arrays.asList("a3", "a2"),
+                names(mBuilder.reset().table("a"), "name", "n DESC", "2"));
+        assertEquals(Arrays.asList("a1", "a2"),
+                names(mBuilder.reset().table("a"), "name", "n ASC", "2"));
+    }
+
+    private List<String> names(SelectionBuilder builder, String column, String orderBy,
+            String limit) {
+        final List<String> names = new ArrayList<String>();
+        final Cursor cursor = builder.query(mDb, new String[]{column}, null, null, orderBy,
+                limit);
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+}
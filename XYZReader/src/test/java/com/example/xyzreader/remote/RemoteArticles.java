@@ -0,0 +1,27 @@
+package com.example.xyzreader.remote;
+
+/**
+ * Builds {@link RemoteArticle}s for tests outside this package.
+ */
+public final class RemoteArticles {
+    private RemoteArticles() {
+    }
+
+    public static RemoteArticle create(String id, String title, String publishedDate) {
+        return create(id, title, publishedDate, "Body of " + title);
+    }
+
+    public static RemoteArticle create(String id, String title, String publishedDate,
+            String body) {
+        final RemoteArticle article = new RemoteArticle();
+        article.set("id", id);
+        article.set("author", "Author " + id);
+        article.set("title", title);
+        article.set("body", body);
+        article.set("thumb", "http://example.com/" + id + "/thumb.jpg");
+        article.set("photo", "http://example.com/" + id + "/photo.jpg");
+        article.set("aspect_ratio", "1.5");
+        article.set("published_date", publishedDate);
+        return article;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.xyzreader.remote;
+
+import android.content.Context;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.net.URL;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@org.robolectric.annotation.Config(sdk = 27)
+public class RemoteEndpointUtilTest {
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Mon, 12 May 2014 16:30:00 GMT";
+    private static final String FEED = "[{\"id\":\"1\",\"title\":\"First\"}]";
+
+    private final OkHttpClient mClient = new OkHttpClient();
+    private MockWebServer mServer;
+    private Context mContext;
+    private URL mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mUrl = mServer.url("/feed").url();
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        RemoteEndpointUtil.clearValidators(mContext);
+        mServer.shutdown();
+    }
+
+    @Test
+    public void savesValidatorsOfAFullResponse() throws Exception {
+        mServer.enqueue(feedResponse());
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        final RecordedRequest first = fetchAndSave();
+        assertNull(first.getHeader("If-None-Match"));
+        assertNull(first.getHeader("If-Modified-Since"));
+
+        assertNull(RemoteEndpointUtil.openArticleStream(mContext, mClient, mUrl));
+        final RecordedRequest second = mServer.takeRequest();
+        assertEquals(ETAG, second.getHeader("If-None-Match"));
+        assertEquals(LAST_MODIFIED, second.getHeader("If-Modified-Since"));
+    }
+
+    @Test
+    public void returnsNullWhenNotModified() throws Exception {
+        mServer.enqueue(new MockResponse().setResponseCode(304));
+
+        assertNull(RemoteEndpointUtil.openArticleStream(mContext, mClient, mUrl));
+    }
+
+    @Test
+    public void failedFetchSendsNoValidatorsOnceCleared() throws Exception {
+        mServer.enqueue(feedResponse());
+        mServer.enqueue(new MockResponse().setResponseCode(500));
+        mServer.enqueue(feedResponse());
+        fetchAndSave();
+
+        try {
+            RemoteEndpointUtil.openArticleStream(mContext, mClient, mUrl);
+            fail("Expected an IOException for a server error");
+        } catch (IOException expected) {
+            // What the sync does on any failure
+            RemoteEndpointUtil.clearValidators(mContext);
+        }
+        assertEquals(ETAG, mServer.takeRequest().getHeader("If-None-Match"));
+
+        final ArticleStream stream = RemoteEndpointUtil.openArticleStream(mContext, mClient, mUrl);
+        assertNotNull(stream);
+        stream.close();
+        final RecordedRequest retry = mServer.takeRequest();
+        assertNull(retry.getHeader("If-None-Match"));
+        assertNull(retry.getHeader("If-Modified-Since"));
+    }
+
+    private RecordedRequest fetchAndSave() throws Exception {
+        final ArticleStream stream = RemoteEndpointUtil.openArticleStream(mContext, mClient, mUrl);
+        assertNotNull(stream);
+        try {
+            assertEquals("First", stream.next().getTitle());
+            assertNull(stream.next());
+            RemoteEndpointUtil.saveValidators(mContext, stream);
+        } finally {
+            stream.close();
+        }
+        return mServer.takeRequest();
+    }
+
+    private static MockResponse feedResponse() {
+        return new MockResponse()
+                .setHeader("ETag", ETAG)
+                .setHeader("Last-Modified", LAST_MODIFIED)
+                .setBody(FEED);
+    }
+}